@@ -0,0 +1,48 @@
+package com.study.querydsl.benchmark;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.repository.MemberRepository;
+import com.study.querydsl.repository.MemberSnapshotQueries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 같은 검색을 DB(JPA)와 메모리 스냅샷(querydsl-collections)으로 비교
+// 스냅샷은 setUp에서 한 번 읽어두므로 검색 비용만 잰다. (SeededApplication이 max-rows 제한을 푼다)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InMemorySearchBenchmark {
+    private MemberRepository memberRepository;
+    private MemberSnapshotQueries memberSnapshotQueries;
+    private MemberSearchCondition condition;
+
+    @Setup
+    public void setUp(SeededApplication application) {
+        memberRepository = application.getBean(MemberRepository.class);
+        memberSnapshotQueries = application.getBean(MemberSnapshotQueries.class);
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+        memberSnapshotQueries.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> jpa() {
+        return memberRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> inMemory() {
+        return memberSnapshotQueries.search(condition);
+    }
+}
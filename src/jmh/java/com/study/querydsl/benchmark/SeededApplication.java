@@ -0,0 +1,48 @@
+package com.study.querydsl.benchmark;
+
+import com.study.querydsl.QuerydslApplication;
+import com.study.querydsl.controller.MemberDataSeeder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// 벤치마크용 스프링 컨텍스트. 메모리 H2에 dataSize 만큼 회원을 넣어두고 시작한다.
+// application.yml 보다 우선하도록 설정은 커맨드라인 인자로 넘긴다.
+@State(Scope.Benchmark)
+public class SeededApplication {
+    private static final int TEAM_COUNT = 10;
+
+    @Param({"1000", "10000", "100000"})
+    public int dataSize;
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=bench",
+                        "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        // count 캐시가 있으면 페이징 비교가 캐시 비교가 되므로 끈다.
+                        "--member.count-cache.max-size=0",
+                        // 메모리 스냅샷 비교(InMemorySearchBenchmark)는 dataSize 전체를 올린다.
+                        "--member.search.in-memory-max-rows=" + Integer.MAX_VALUE);
+        context.getBean(MemberDataSeeder.class).seed(TEAM_COUNT, dataSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
@@ -0,0 +1,61 @@
+package com.study.querydsl.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.study.querydsl.controller.MemberStreamWriter;
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.repository.MemberQdslRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+// 검색 결과 -> json 응답
+// dto: QMemberTeamDto로 목록을 만든 뒤 ObjectMapper로 쓴다. (/v1/members)
+// direct: Tuple 값을 JsonGenerator에 바로 쓴다. (/v1/members/json)
+// 처리량과 함께 gc 프로파일러(build.gradle)의 gc.alloc.rate.norm으로 호출당 할당량을 비교한다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+    private MemberQdslRepository memberQdslRepository;
+    private MemberStreamWriter memberStreamWriter;
+    private ObjectMapper objectMapper;
+    private MemberSearchCondition condition;
+    // ObjectMapper.writeValue가 스트림을 닫으므로 OutputStream.nullOutputStream() 대신 닫혀도 버리기만 하는 스트림을 쓴다.
+    private final OutputStream out = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp(SeededApplication application) {
+        memberQdslRepository = application.getBean(MemberQdslRepository.class);
+        memberStreamWriter = application.getBean(MemberStreamWriter.class);
+        objectMapper = application.getBean(ObjectMapper.class);
+        // 전체의 1/10 (팀 하나)
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+    }
+
+    @Benchmark
+    public void dto() throws IOException {
+        objectMapper.writeValue(out, memberQdslRepository.search(condition));
+    }
+
+    @Benchmark
+    public void direct() {
+        memberStreamWriter.writeJsonArray(condition, out);
+    }
+}
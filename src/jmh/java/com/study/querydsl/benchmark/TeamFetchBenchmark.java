@@ -0,0 +1,75 @@
+package com.study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.dto.MemberDto;
+import com.study.querydsl.dto.TeamMembersDto;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.TeamQueryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static com.study.querydsl.entitly.QTeam.team;
+
+// 팀 + 소속 회원 조회 방식 비교
+// fetchJoin: QuerydslBasicTest.fetchJoinUse 처럼 한 번에 조인 (팀 row가 회원 수만큼 늘어난다)
+// batchFetch: 팀만 조회하고 members 지연 로딩 (@BatchSize)
+// twoQueries: TeamQueryRepository.findTeamsWithMembers
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TeamFetchBenchmark {
+    private TeamQueryRepository teamQueryRepository;
+    private JPAQueryFactory queryFactory;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp(SeededApplication application) {
+        teamQueryRepository = application.getBean(TeamQueryRepository.class);
+        queryFactory = new JPAQueryFactory(application.getBean(EntityManager.class));
+        transactionTemplate = new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @Benchmark
+    public List<TeamMembersDto> twoQueries() {
+        return teamQueryRepository.findTeamsWithMembers(null);
+    }
+
+    @Benchmark
+    public List<TeamMembersDto> fetchJoin() {
+        return transactionTemplate.execute(status -> toDto(queryFactory
+                .selectFrom(team).distinct()
+                .leftJoin(team.members, member).fetchJoin()
+                .orderBy(team.id.asc())
+                .fetch()));
+    }
+
+    @Benchmark
+    public List<TeamMembersDto> batchFetch() {
+        return transactionTemplate.execute(status -> toDto(queryFactory
+                .selectFrom(team)
+                .orderBy(team.id.asc())
+                .fetch()));
+    }
+
+    private List<TeamMembersDto> toDto(List<Team> teams) {
+        return teams.stream().map(t -> {
+            TeamMembersDto dto = new TeamMembersDto(t.getId(), t.getName());
+            t.getMembers().forEach(m -> dto.getMembers().add(new MemberDto(m.getUsername(), m.getAge())));
+            return dto;
+        }).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,84 @@
+package com.study.querydsl.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// 엔드포인트별 지연 시간(마이크로초) 히스토그램과 실패 수
+// 2xx가 아닌 응답(503 거절 등)과 연결 실패는 errors로 세고 히스토그램에는 넣지 않는다.
+public class LatencyReport {
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+    private Duration elapsed = Duration.ZERO;
+
+    public LatencyReport(List<String> endpoints) {
+        for (String endpoint : endpoints) {
+            histograms.put(endpoint, new ConcurrentHistogram(MAX_LATENCY_MICROS, 3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    public void record(String endpoint, int status, long nanos) {
+        if (status < 200 || status >= 300) {
+            errors.get(endpoint).increment();
+            return;
+        }
+        histograms.get(endpoint).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_LATENCY_MICROS));
+    }
+
+    public void finish(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-8s %10s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+        Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+        long totalErrors = 0;
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            long endpointErrors = errors.get(entry.getKey()).sum();
+            printRow(out, entry.getKey(), entry.getValue(), endpointErrors);
+            total.add(entry.getValue());
+            totalErrors += endpointErrors;
+        }
+        printRow(out, "total", total, totalErrors);
+    }
+
+    // HdrHistogram 형식(.hgrm). https://hdrhistogram.github.io/HdrHistogram/plotFiles.html 에서 그래프로 볼 수 있다.
+    public void writeDistributions(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                // 마이크로초 -> 밀리초
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private void printRow(PrintStream out, String name, Histogram histogram, long errorCount) {
+        long requests = histogram.getTotalCount() + errorCount;
+        double seconds = Math.max(elapsed.toMillis(), 1) / 1000.0;
+        out.printf("%-8s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                name, requests, errorCount, requests / seconds,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
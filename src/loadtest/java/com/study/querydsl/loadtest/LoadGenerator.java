@@ -0,0 +1,73 @@
+package com.study.querydsl.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// concurrency 개의 클라이언트가 각자 응답을 받으면 바로 다음 요청을 보낸다. (closed loop)
+// 서버가 느려지면 요청도 덜 보내므로 지연 시간이 실제보다 좋게 나올 수 있다. (coordinated omission)
+// 처리량 한계를 찾는 용도로 쓰고, 목표 처리량에서의 지연 시간은 concurrency를 낮춰서 본다.
+public class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+    private final RequestGenerator requests;
+    private final int concurrency;
+    private final HttpClient client;
+
+    public LoadGenerator(URI baseUri, RequestGenerator requests, int concurrency) {
+        this.baseUri = baseUri;
+        this.requests = requests;
+        this.concurrency = concurrency;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public LatencyReport run(Duration duration) throws InterruptedException {
+        LatencyReport report = new LatencyReport(requests.getEndpoints());
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                Random random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                    String endpoint = requests.nextEndpoint(random);
+                    HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(requests.path(endpoint, random)))
+                            .timeout(REQUEST_TIMEOUT)
+                            .GET()
+                            .build();
+                    long requestStart = System.nanoTime();
+                    report.record(endpoint, send(request), System.nanoTime() - requestStart);
+                }
+            });
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(duration.plus(REQUEST_TIMEOUT).toMillis(), TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+        }
+        report.finish(Duration.ofNanos(System.nanoTime() - start));
+        return report;
+    }
+
+    // 응답 본문도 다 받을 때까지를 잰다. 연결 실패는 -1
+    private int send(HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+}
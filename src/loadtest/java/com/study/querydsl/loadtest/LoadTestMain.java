@@ -0,0 +1,85 @@
+package com.study.querydsl.loadtest;
+
+import com.study.querydsl.QuerydslApplication;
+import com.study.querydsl.controller.MemberDataSeeder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 내장 서버를 메모리 H2로 띄우고 데이터를 넣은 뒤 /v1~/v3에 부하를 준다. (./gradlew loadTest)
+ * 결과로 엔드포인트별 처리량과 p50/p99/p99.9 지연 시간, 같은 구간의 HikariCP 커넥션 대기 시간을 출력한다.
+ */
+public class LoadTestMain {
+    private static final String HIKARI_ACQUIRE = "hikaricp.connections.acquire";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new LoadTestOptions();
+        System.out.println("loadtest: " + options);
+
+        ConfigurableApplicationContext context = start(options);
+        try {
+            context.getBean(MemberDataSeeder.class).seed(options.getTeams(), options.getMembers());
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            RequestGenerator requests = new RequestGenerator(options);
+            LoadGenerator generator = new LoadGenerator(URI.create("http://localhost:" + port), requests,
+                    options.getConcurrency());
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+
+            generator.run(options.getWarmup());
+            Timer acquire = registry.find(HIKARI_ACQUIRE).timer();
+            long acquireCount = acquire == null ? 0 : acquire.count();
+            double acquireTotalMillis = acquire == null ? 0 : acquire.totalTime(TimeUnit.MILLISECONDS);
+
+            LatencyReport report = generator.run(options.getDuration());
+
+            report.print(System.out);
+            printHikari(acquire, acquireCount, acquireTotalMillis);
+            report.writeDistributions(Paths.get(options.getOutput()));
+            System.out.println("latency distributions: " + Paths.get(options.getOutput()).toAbsolutePath());
+        } finally {
+            context.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(LoadTestOptions options) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--spring.profiles.active=loadtest",
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--logging.level.org.hibernate.SQL=warn",
+                // 커넥션 대기 시간 분포를 보기 위해 percentile을 켠다.
+                "--management.metrics.distribution.percentiles." + HIKARI_ACQUIRE + "=0.5,0.99,0.999"));
+        // 뒤에 온 값이 우선한다.
+        args.addAll(Arrays.asList(options.getAppArgs()));
+        return new SpringApplicationBuilder(QuerydslApplication.class).run(args.toArray(new String[0]));
+    }
+
+    // count, 평균은 측정 구간만의 값이고 percentile은 micrometer 기본 설정대로 최근 2분 구간의 값이다.
+    private static void printHikari(Timer acquire, long countBefore, double totalMillisBefore) {
+        if (acquire == null) {
+            System.out.println(HIKARI_ACQUIRE + ": (no meter)");
+            return;
+        }
+        long count = acquire.count() - countBefore;
+        double mean = count == 0 ? 0 : (acquire.totalTime(TimeUnit.MILLISECONDS) - totalMillisBefore) / count;
+        StringBuilder line = new StringBuilder(String.format("%s: count=%d mean=%.3fms", HIKARI_ACQUIRE, count, mean));
+        HistogramSnapshot snapshot = acquire.takeSnapshot();
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            line.append(String.format(" p%s=%.3fms", percentile.percentile() * 100, percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        line.append(String.format(" max=%.3fms", acquire.max(TimeUnit.MILLISECONDS)));
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,116 @@
+package com.study.querydsl.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 부하 테스트 설정. 모두 -Dloadtest.xxx 시스템 프로퍼티로 바꿀 수 있다.
+ * <ul>
+ *     <li>members, teams - 미리 넣어둘 데이터 수 (MemberDataSeeder)</li>
+ *     <li>concurrency - 동시에 요청을 보내는 클라이언트 수 (응답을 받아야 다음 요청을 보낸다)</li>
+ *     <li>warmup, duration - 워밍업(결과에서 제외), 측정 시간</li>
+ *     <li>mix - 엔드포인트별 비중. v1:1,v2:1,v3:1</li>
+ *     <li>conditions - 검색 조건 필드별로 값을 채울 확률. username:0.05,teamName:0.5,ageGoe:0.3,ageLoe:0.3</li>
+ *     <li>pages, page-size - v2/v3 페이지 번호는 0 ~ pages-1 중 무작위</li>
+ *     <li>app-args - 서버에 넘길 스프링 설정. 공백으로 구분 (--member.async.enabled=false ...)</li>
+ *     <li>output - 엔드포인트별 .hgrm 파일을 쓸 디렉토리</li>
+ * </ul>
+ */
+public class LoadTestOptions {
+    private final int members = intValue("members", 100000);
+    private final int teams = intValue("teams", 10);
+    private final int concurrency = intValue("concurrency", 16);
+    private final Duration warmup = duration("warmup", "10s");
+    private final Duration duration = duration("duration", "30s");
+    private final Map<String, Double> mix = weights("mix", "v1:1,v2:1,v3:1");
+    private final Map<String, Double> conditions = weights("conditions", "username:0.05,teamName:0.5,ageGoe:0.3,ageLoe:0.3");
+    private final int pages = intValue("pages", 50);
+    private final int pageSize = intValue("page-size", 20);
+    private final String[] appArgs = value("app-args", "").trim().isEmpty() ? new String[0] : value("app-args", "").trim().split("\\s+");
+    private final String output = value("output", "build/loadtest");
+
+    public int getMembers() {
+        return members;
+    }
+
+    public int getTeams() {
+        return teams;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public Map<String, Double> getMix() {
+        return mix;
+    }
+
+    public double getConditionProbability(String field) {
+        return conditions.getOrDefault(field, 0.0);
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public String[] getAppArgs() {
+        return appArgs;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return "members=" + members + ", teams=" + teams + ", concurrency=" + concurrency
+                + ", warmup=" + warmup + ", duration=" + duration + ", mix=" + mix + ", conditions=" + conditions
+                + ", pages=" + pages + ", pageSize=" + pageSize;
+    }
+
+    private static String value(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    private static int intValue(String name, int defaultValue) {
+        return Integer.parseInt(value(name, String.valueOf(defaultValue)));
+    }
+
+    // 10s, 500ms, 2m
+    private static Duration duration(String name, String defaultValue) {
+        String text = value(name, defaultValue).trim().toLowerCase();
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(text.endsWith("s") ? text.substring(0, text.length() - 1) : text));
+    }
+
+    // key:value,key:value
+    private static Map<String, Double> weights(String name, String defaultValue) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String entry : value(name, defaultValue).split(",")) {
+            String[] pair = entry.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("loadtest." + name + " 형식이 잘못되었습니다: " + entry);
+            }
+            weights.put(pair[0].trim(), Double.parseDouble(pair[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,79 @@
+package com.study.querydsl.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+
+// mix 비중대로 엔드포인트를 고르고, conditions 확률대로 검색 조건을 채운 요청 경로를 만든다.
+// 값은 MemberDataSeeder가 넣는 데이터(member0.., team0.., 나이 0~99)에 맞춘다.
+public class RequestGenerator {
+    private static final int MAX_AGE = 99;
+
+    private final LoadTestOptions options;
+    private final List<String> endpoints = new ArrayList<>();
+    private final double[] cumulativeWeights;
+
+    public RequestGenerator(LoadTestOptions options) {
+        this.options = options;
+        double total = 0;
+        List<Double> cumulative = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : options.getMix().entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            endpoints.add(entry.getKey());
+            total += entry.getValue();
+            cumulative.add(total);
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix에 비중이 0보다 큰 엔드포인트가 없습니다.");
+        }
+        cumulativeWeights = cumulative.stream().mapToDouble(w -> w).toArray();
+    }
+
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    public String nextEndpoint(Random random) {
+        double pick = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return endpoints.get(i);
+            }
+        }
+        return endpoints.get(endpoints.size() - 1);
+    }
+
+    // ex) /v2/members?teamName=team3&ageGoe=20&page=7&size=20
+    public String path(String endpoint, Random random) {
+        StringJoiner query = new StringJoiner("&");
+        if (options.getMembers() > 0 && hit("username", random)) {
+            query.add("username=member" + random.nextInt(options.getMembers()));
+        }
+        // teams=0이면 팀 없는 회원만 있으므로 팀 조건을 걸지 않는다.
+        if (options.getTeams() > 0 && hit("teamName", random)) {
+            query.add("teamName=team" + random.nextInt(options.getTeams()));
+        }
+        int ageGoe = 0;
+        if (hit("ageGoe", random)) {
+            ageGoe = random.nextInt(MAX_AGE + 1);
+            query.add("ageGoe=" + ageGoe);
+        }
+        if (hit("ageLoe", random)) {
+            query.add("ageLoe=" + (ageGoe + random.nextInt(MAX_AGE - ageGoe + 1)));
+        }
+        if (!endpoint.equals("v1")) {
+            query.add("page=" + random.nextInt(options.getPages()));
+            query.add("size=" + options.getPageSize());
+        }
+        String path = "/" + endpoint + "/members";
+        return query.length() == 0 ? path : path + "?" + query;
+    }
+
+    private boolean hit(String field, Random random) {
+        return random.nextDouble() < options.getConditionProbability(field);
+    }
+}
@@ -0,0 +1,65 @@
+package com.study.querydsl.config;
+
+import com.study.querydsl.controller.MemberSearchExecutor;
+import com.study.querydsl.repository.MemberCountCache;
+import com.study.querydsl.repository.support.ParallelCountExecutor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+// count 캐시, 병렬 count 실행기가 들고 있는 카운터를 micrometer에 등록한다.
+// hibernate Statistics는 hibernate.generate_statistics를 켰을 때만 hibernate-micrometer로 스프링 부트가 등록한다.
+@Configuration
+public class QueryMetricsConfig {
+
+    @Bean
+    public MeterBinder memberCountCacheMetrics(MemberCountCache countCache) {
+        return registry -> {
+            FunctionCounter.builder("member.count.cache", countCache, MemberCountCache::getHitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("member.count.cache", countCache, MemberCountCache::getMissCount)
+                    .tag("result", "miss")
+                    .register(registry);
+            Gauge.builder("member.count.cache.size", countCache, MemberCountCache::size)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder parallelCountMetrics(ParallelCountExecutor executor) {
+        return registry -> {
+            FunctionCounter.builder("page.parallel.count", executor, ParallelCountExecutor::getParallelPages)
+                    .tag("result", "used")
+                    .register(registry);
+            FunctionCounter.builder("page.parallel.count", executor, ParallelCountExecutor::getDiscardedCounts)
+                    .tag("result", "discarded")
+                    .register(registry);
+            // 큐가 찼거나, 시작이 늦었거나, timeout이 나서 호출한 스레드에서 센 경우
+            FunctionCounter.builder("page.parallel.count", executor, ParallelCountExecutor::getInlineCounts)
+                    .tag("result", "inline")
+                    .register(registry);
+            // content, count를 순서대로 실행했을 때보다 줄어든 시간의 합
+            FunctionCounter.builder("page.parallel.saved", executor,
+                            e -> (double) TimeUnit.NANOSECONDS.toMillis(e.getSavedNanos()))
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder memberSearchExecutorMetrics(MemberSearchExecutor executor) {
+        return registry -> {
+            FunctionCounter.builder("member.search.rejected", executor, MemberSearchExecutor::getRejectedCount)
+                    .register(registry);
+            Gauge.builder("member.search.queued", executor, MemberSearchExecutor::getQueueSize)
+                    .register(registry);
+            Gauge.builder("member.search.active", executor, MemberSearchExecutor::getActiveCount)
+                    .register(registry);
+        };
+    }
+}
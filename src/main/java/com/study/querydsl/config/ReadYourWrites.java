@@ -0,0 +1,124 @@
+package com.study.querydsl.config;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.util.function.Supplier;
+
+/**
+ * 클라이언트별 마지막 쓰기 시각 (read-your-writes)
+ * <p>
+ * 요청마다 {@link ReadYourWritesFilter}가 쿠키에서 마지막 쓰기 시각을 읽어 현재 스레드에 걸어 둔다.
+ * 엔티티를 바꾼 트랜잭션이 커밋되면 시각을 갱신하고 쿠키로 돌려준다.
+ * {@link ReplicationRoutingDataSource}는 이 시각을 보고 그 클라이언트의 읽기만 primary로 보낸다.
+ * <p>
+ * 다른 스레드에서 실행하는 작업은 {@link #propagate}로 넘긴다. (StatementCounter와 같은 방식)
+ */
+public final class ReadYourWrites {
+    static final String COOKIE_NAME = "last-write";
+
+    private static final ThreadLocal<Client> current = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    // 현재 클라이언트가 마지막으로 쓴 시각 (epoch millis). 요청 밖이거나 쓴 적이 없으면 0
+    public static long lastWriteAt() {
+        Client client = current.get();
+        return client == null ? 0 : client.lastWriteAt;
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋되면 현재 클라이언트가 썼다고 기록한다. 트랜잭션당 한 번만 등록한다.
+     * 트랜잭션 밖이면 이미 커밋된 것이므로 바로 기록한다. 요청 밖이면 아무 것도 하지 않는다.
+     */
+    public static void markWrite() {
+        Client client = current.get();
+        if (client == null || TransactionSynchronizationManager.hasResource(client)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            client.wrote(System.currentTimeMillis());
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(client, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                client.wrote(System.currentTimeMillis());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(client);
+            }
+        });
+    }
+
+    // 이미 커밋된 쓰기 (벌크 연산의 구간). 바깥 트랜잭션과 상관없이 바로 기록한다.
+    public static void markCommittedWrite() {
+        Client client = current.get();
+        if (client != null) {
+            client.wrote(System.currentTimeMillis());
+        }
+    }
+
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        Client client = current.get();
+        if (client == null) {
+            return task;
+        }
+        return () -> {
+            Client previous = current.get();
+            current.set(client);
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        };
+    }
+
+    static void bind(Client client) {
+        current.set(client);
+    }
+
+    static void clear() {
+        current.remove();
+    }
+
+    // 요청 하나의 클라이언트. response가 있으면 쓰기 시각을 쿠키로 돌려준다.
+    static class Client {
+        private final HttpServletResponse response;
+        private final int cookieMaxAgeSeconds;
+        private volatile long lastWriteAt;
+        // 마지막으로 쿠키를 붙인 시각. 벌크 연산처럼 한 요청에서 여러 번 쓰면 1초에 한 번만 붙인다.
+        private long cookieAt;
+
+        Client(long lastWriteAt, HttpServletResponse response, int cookieMaxAgeSeconds) {
+            this.lastWriteAt = lastWriteAt;
+            this.response = response;
+            this.cookieMaxAgeSeconds = cookieMaxAgeSeconds;
+        }
+
+        synchronized void wrote(long at) {
+            lastWriteAt = at;
+            // 이미 응답을 보내기 시작했으면 쿠키는 못 붙인다. 같은 요청 안의 읽기만 primary로 간다.
+            if (response == null || response.isCommitted() || at - cookieAt < 1000) {
+                return;
+            }
+            cookieAt = at;
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(at));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge(cookieMaxAgeSeconds);
+            response.addCookie(cookie);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.study.querydsl.config;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+// 요청의 last-write 쿠키를 읽어 ReadYourWrites에 건다. 쿠키는 read-your-writes-window 동안만 살아 있다.
+// 비동기 검색(v1~v3)은 MemberSearchExecutor가 검색 스레드로 넘겨주므로 async dispatch에서는 다시 걸지 않는다.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private final int cookieMaxAgeSeconds;
+
+    public ReadYourWritesFilter(Duration readYourWritesWindow) {
+        // 초 단위로 올림
+        this.cookieMaxAgeSeconds = (int) Math.max(1, (readYourWritesWindow.toMillis() + 999) / 1000);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites.bind(new ReadYourWrites.Client(lastWriteAt(request), response, cookieMaxAgeSeconds));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.clear();
+        }
+    }
+
+    // 쿠키가 없거나 잘못된 값이면 0 (쓴 적 없음). 미래 시각은 지금으로 자른다.
+    private static long lastWriteAt(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, ReadYourWrites.COOKIE_NAME);
+        if (cookie == null) {
+            return 0;
+        }
+        try {
+            return Math.min(Long.parseLong(cookie.getValue()), System.currentTimeMillis());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.study.querydsl.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica로, 나머지는 primary로 보낸다.
+ * <p>
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 세팅되지 않으므로
+ * 반드시 LazyConnectionDataSourceProxy로 감싸서 실제 쿼리를 날릴 때 커넥션을 고르게 해야 한다.
+ * <p>
+ * readYourWritesWindow가 0보다 크면 마지막으로 쓴 클라이언트({@link ReadYourWrites})의 읽기만 그 시간 동안 primary로 보낸다.
+ * replica 복제가 늦어서 방금 쓴 내용이 안 보이는 문제를 피하기 위한 것이다. 다른 클라이언트는 계속 replica를 읽는다.
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+    public enum Route { PRIMARY, REPLICA }
+
+    private final long readYourWritesWindowMillis;
+
+    public ReplicationRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Route.PRIMARY, primary);
+        targets.put(Route.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.readYourWritesWindowMillis = readYourWritesWindow.toMillis();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return isWithinReadYourWritesWindow() ? Route.PRIMARY : Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+
+    private boolean isWithinReadYourWritesWindow() {
+        return readYourWritesWindowMillis > 0
+                && System.currentTimeMillis() - ReadYourWrites.lastWriteAt() < readYourWritesWindowMillis;
+    }
+}
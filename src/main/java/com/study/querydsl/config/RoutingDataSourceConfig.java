@@ -0,0 +1,75 @@
+package com.study.querydsl.config;
+
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// datasource.routing.enabled=true 면 spring.datasource 대신 primary/replica 두 개의 커넥션 풀을 쓴다.
+// DataSource 빈을 직접 등록하므로 스프링 부트의 DataSource 자동 설정은 동작하지 않는다.
+// 로컬에서는 replica 프로필로 H2 두 개를 띄워서 확인할 수 있다. (application-replica.yml)
+// read-your-writes는 클라이언트마다 last-write 쿠키로 따로 본다. (ReadYourWrites)
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.routing", name = "enabled", havingValue = "true")
+public class RoutingDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("datasource.routing.primary")
+    public HikariDataSource primaryDataSource() {
+        return new HikariDataSource();
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.routing.replica")
+    public HikariDataSource replicaDataSource() {
+        return new HikariDataSource();
+    }
+
+    @Bean
+    public ReplicationRoutingDataSource replicationRoutingDataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica,
+            @Value("${datasource.routing.read-your-writes-window:0s}") Duration readYourWritesWindow) {
+        return new ReplicationRoutingDataSource(primary, replica, readYourWritesWindow);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicationRoutingDataSource replicationRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicationRoutingDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${datasource.routing.read-your-writes-window:0s}") Duration readYourWritesWindow) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(readYourWritesWindow));
+        registration.addUrlPatterns("/*");
+        registration.setEnabled(!readYourWritesWindow.isZero());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    // 엔티티가 실제로 바뀐 트랜잭션만 쓰기로 본다. 읽기만 한 @Transactional은 쿠키를 남기지 않는다.
+    // 벌크 이벤트는 구간이 커밋된 뒤에 오므로 바로 기록한다. (MemberBulkOperations)
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isBulk()) {
+            ReadYourWrites.markCommittedWrite();
+        } else {
+            ReadYourWrites.markWrite();
+        }
+    }
+}
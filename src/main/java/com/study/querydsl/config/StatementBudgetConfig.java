@@ -0,0 +1,30 @@
+package com.study.querydsl.config;
+
+import com.study.querydsl.diagnostics.StatementBudgetFilter;
+import com.study.querydsl.diagnostics.StatementCounter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// hibernate에 StatementCounter를 StatementInspector로 등록하고, 요청 단위로 sql을 세는 필터를 붙인다.
+@Configuration
+public class StatementBudgetConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(StatementCounter statementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementCounter);
+    }
+
+    @Bean
+    public FilterRegistrationBean<StatementBudgetFilter> statementBudgetFilter(StatementCounter statementCounter) {
+        FilterRegistrationBean<StatementBudgetFilter> registration =
+                new FilterRegistrationBean<>(new StatementBudgetFilter(statementCounter));
+        registration.addUrlPatterns("/*");
+        // open-in-view 인터셉터보다 바깥에서 범위를 연다.
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
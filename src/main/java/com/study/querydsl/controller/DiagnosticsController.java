@@ -0,0 +1,25 @@
+package com.study.querydsl.controller;
+
+import com.study.querydsl.diagnostics.QueryPlanInspector;
+import com.study.querydsl.dto.QueryPlanReport;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// H2 전용 진단 기능이라 diagnostics.query-plans.enabled=true 일 때만 노출한다.
+@RestController
+@ConditionalOnProperty(name = "diagnostics.query-plans.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class DiagnosticsController {
+    private final QueryPlanInspector queryPlanInspector;
+
+    // tableScanOnly=true면 풀 스캔하는 모양만 보여준다.
+    @GetMapping("/diagnostics/query-plans")
+    public List<QueryPlanReport> queryPlans(@RequestParam(defaultValue = "false") boolean tableScanOnly) {
+        return tableScanOnly ? queryPlanInspector.findTableScans() : queryPlanInspector.inspect();
+    }
+}
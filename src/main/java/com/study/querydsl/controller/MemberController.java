@@ -1,33 +1,134 @@
 package com.study.querydsl.controller;
 
+import com.study.querydsl.dto.MemberCursorPage;
 import com.study.querydsl.dto.MemberSearchCondition;
 import com.study.querydsl.dto.MemberTeamDto;
 import com.study.querydsl.repository.MemberQdslRepository;
 import com.study.querydsl.repository.MemberRepository;
+import com.study.querydsl.repository.MemberSearchQueries;
+import com.study.querydsl.repository.MemberSnapshotQueries;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
     private final MemberQdslRepository memberQdslRepository;
     private final MemberRepository memberRepository;
+    private final MemberStreamWriter memberStreamWriter;
+    private final MemberSearchQueries memberSearchQueries;
+    private final MemberSnapshotQueries memberSnapshotQueries;
+    // v1~v3는 이 실행기의 스레드에서 조회한다. (member.async.enabled)
+    private final MemberSearchExecutor memberSearchExecutor;
+    private final MemberSearchETags memberSearchETags;
+    // true면 v1~v3가 조건 모양별로 미리 만들어 둔 JPQL을 쓴다. (결과는 같다)
+    @Value("${member.search.compiled-queries:false}")
+    private boolean compiledQueries;
+    // true면 v1~v3가 DB 대신 메모리 스냅샷에서 검색한다. (compiled-queries보다 우선)
+    @Value("${member.search.in-memory:false}")
+    private boolean inMemory;
 
+    // If-None-Match가 현재 ETag와 같으면 조회하지 않고 304 (null을 돌려주면 스프링이 응답을 끝낸다)
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberQdslRepository.search(condition);
+    public CompletableFuture<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition, WebRequest request) {
+        if (request.checkNotModified(memberSearchETags.of("/v1/members", condition))) {
+            return null;
+        }
+        return memberSearchExecutor.submit(() -> {
+            if (inMemory) {
+                return memberSnapshotQueries.search(condition);
+            }
+            if (compiledQueries) {
+                return memberSearchQueries.search(condition);
+            }
+            return memberQdslRepository.search(condition);
+        });
     }
+    // v1과 같은 결과를 NDJSON으로 흘려보낸다. 결과를 메모리에 모으지 않는다.
+    @GetMapping(value = "/v1/members/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamMemberV1(MemberSearchCondition condition) {
+        StreamingResponseBody body = out -> memberStreamWriter.write(condition, out);
+        return ResponseEntity.ok(body);
+    }
+    // 회원명 자동완성. v1과 같은 검색 조건을 같이 걸 수 있다. size는 1 ~ MAX_TYPEAHEAD_SIZE, 벗어나면 400
+    @GetMapping("/v1/members/typeahead")
+    public List<MemberTeamDto> typeaheadMemberV1(@RequestParam String q,
+                                                 @RequestParam(defaultValue = "false") boolean contains,
+                                                 @RequestParam(defaultValue = "10") int size,
+                                                 MemberSearchCondition condition) {
+        return memberQdslRepository.searchTypeahead(q, contains, condition, size);
+    }
+    // v1과 같은 json 배열이지만 dto 없이 조회 결과를 바로 응답에 쓴다. 결과가 클 때 쓴다.
+    @GetMapping(value = "/v1/members/json", produces = "application/json")
+    public ResponseEntity<StreamingResponseBody> writeMemberV1(MemberSearchCondition condition) {
+        StreamingResponseBody body = out -> memberStreamWriter.writeJsonArray(condition, out);
+        return ResponseEntity.ok(body);
+    }
+    // estimatedCount=true면 total을 세지 않고 추정한다. 응답의 estimated가 true면 totalElements는 대략적인 값
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                                                 @RequestParam(defaultValue = "false") boolean estimatedCount,
+                                                                 WebRequest request) {
+        if (request.checkNotModified(memberSearchETags.of(estimatedCount ? "/v2/members?estimatedCount" : "/v2/members",
+                condition, pageable))) {
+            return null;
+        }
+        // 스냅샷과 미리 만든 JPQL은 정렬을 모르므로 sort가 있으면 querydsl 쪽(MemberSorts)으로 보낸다.
+        boolean sorted = pageable.getSort().isSorted();
+        return memberSearchExecutor.submit(() -> {
+            if (inMemory && !sorted) {
+                return memberSnapshotQueries.searchPage(condition, pageable);
+            }
+            // 스냅샷은 메모리에서 세므로 그대로 두고, 미리 만든 JPQL은 정확히 세므로 추정할 때는 건너뛴다.
+            if (estimatedCount) {
+                return memberRepository.searchPageEstimated(condition, pageable);
+            }
+            if (compiledQueries && !sorted) {
+                return memberSearchQueries.searchPage(condition, pageable);
+            }
+            return memberRepository.searchPageSimple(condition, pageable);
+        });
     }
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                                 @RequestParam(defaultValue = "false") boolean estimatedCount,
+                                                                 WebRequest request) {
+        if (request.checkNotModified(memberSearchETags.of(estimatedCount ? "/v3/members?estimatedCount" : "/v3/members",
+                condition, pageable))) {
+            return null;
+        }
+        // 스냅샷과 미리 만든 JPQL은 정렬을 모르므로 sort가 있으면 querydsl 쪽(MemberSorts)으로 보낸다.
+        boolean sorted = pageable.getSort().isSorted();
+        return memberSearchExecutor.submit(() -> {
+            if (inMemory && !sorted) {
+                return memberSnapshotQueries.searchPage(condition, pageable);
+            }
+            // 스냅샷은 메모리에서 세므로 그대로 두고, 미리 만든 JPQL은 정확히 세므로 추정할 때는 건너뛴다.
+            if (estimatedCount) {
+                return memberRepository.searchPageEstimated(condition, pageable);
+            }
+            if (compiledQueries && !sorted) {
+                return memberSearchQueries.searchPage(condition, pageable);
+            }
+            return memberRepository.searchPageComplex(condition, pageable);
+        });
+    }
+    // 응답의 nextCursor를 cursor로 넘기면 다음 페이지. offset이 없어서 깊은 페이지도 첫 페이지와 비용이 같다.
+    @GetMapping("/v4/members")
+    public MemberCursorPage searchMemberV4(MemberSearchCondition condition,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int size) {
+        return memberRepository.searchByCursor(condition, cursor, size);
     }
 }
@@ -0,0 +1,56 @@
+package com.study.querydsl.controller;
+
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+// 부하 테스트용 대량 데이터 적재
+// hibernate.jdbc.batch_size 만큼 insert를 묶어서 보내고, 그만큼 쌓이면 flush + clear 해서
+// 영속성 컨텍스트가 계속 커지지 않게 한다.
+@Component
+public class MemberDataSeeder {
+    @PersistenceContext
+    private EntityManager em;
+    private final int flushSize;
+
+    public MemberDataSeeder(@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    @Transactional
+    public void seed(int teamCount, int memberCount) {
+        Assert.isTrue(teamCount >= 0, "teamCount must not be negative: " + teamCount);
+        Assert.isTrue(memberCount >= 0, "memberCount must not be negative: " + memberCount);
+        List<Long> teamIds = new ArrayList<>(teamCount);
+        for (int i = 0; i < teamCount; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            teamIds.add(team.getId());
+        }
+        em.flush();
+        em.clear();
+
+        for (int i = 0; i < memberCount; i++) {
+            // new Member(username, age, team)는 team.getMembers()에 add 하기 때문에
+            // 프록시 초기화 + 컬렉션 로딩이 일어난다. 연관관계 주인 쪽만 세팅한다.
+            // 팀이 0개면 팀 없는 회원만 넣는다.
+            Member member = new Member("member" + i, i % 100);
+            if (teamCount > 0) {
+                member.setTeam(em.getReference(Team.class, teamIds.get(i % teamCount)));
+            }
+            em.persist(member);
+            if ((i + 1) % flushSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+    }
+}
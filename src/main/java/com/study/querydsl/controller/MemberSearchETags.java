@@ -0,0 +1,42 @@
+package com.study.querydsl.controller;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.repository.DataVersion;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.util.StringUtils.hasText;
+
+// 검색 응답의 ETag = hash(시작 시각, 데이터 버전, 경로, 정규화한 검색 조건, 페이지)
+// 데이터 버전이 같으면 같은 조건의 결과도 같으므로 If-None-Match가 맞으면 DB를 보지 않고 304를 돌려준다.
+@Component
+@RequiredArgsConstructor
+public class MemberSearchETags {
+    private final DataVersion dataVersion;
+
+    public String of(String path, MemberSearchCondition condition) {
+        return of(path, condition, null);
+    }
+
+    public String of(String path, MemberSearchCondition condition, Pageable pageable) {
+        StringBuilder key = new StringBuilder()
+                .append(dataVersion.getEpoch()).append('|')
+                .append(dataVersion.current()).append('|')
+                .append(path).append('|')
+                // 빈 문자열 조건은 검색에서 무시되므로 없는 것과 같게 본다.
+                .append(hasText(condition.getUsername()) ? condition.getUsername() : "").append('|')
+                .append(hasText(condition.getTeamName()) ? condition.getTeamName() : "").append('|')
+                .append(condition.getAgeGoe()).append('|')
+                .append(condition.getAgeLoe());
+        if (pageable != null) {
+            key.append('|').append(pageable.getPageNumber())
+                    .append('|').append(pageable.getPageSize())
+                    .append('|').append(pageable.getSort());
+        }
+        return DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,93 @@
+package com.study.querydsl.controller;
+
+import com.study.querydsl.config.ReadYourWrites;
+import com.study.querydsl.diagnostics.StatementCounter;
+import com.study.querydsl.repository.support.ConnectionPoolSize;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * v1~v3 검색을 서블릿 스레드 대신 실행하는 스레드 풀
+ * <p>
+ * 쿼리 하나가 커넥션 하나를 쓰므로 스레드 수는 커넥션 풀 크기({@link ConnectionPoolSize})에 맞춘다.
+ * (병렬 count가 켜져 있으면 그쪽이 절반을 쓰므로 나머지만 쓴다. ParallelCountExecutor)
+ * 스레드가 모두 바쁘면 queue-capacity 만큼 기다리고, 그것도 차면 {@link SearchRejectedException}(503)으로 거절한다.
+ * 느린 검색이 몰려도 톰캣 스레드는 바로 반환되므로 다른 요청은 계속 받을 수 있다.
+ * <p>
+ * member.async.enabled=false 면 호출한 스레드에서 바로 실행하고 완료된 future를 돌려준다.
+ */
+@Component
+public class MemberSearchExecutor implements DisposableBean {
+    private final boolean enabled;
+    private final ThreadPoolExecutor executor;
+    private final StatementCounter statementCounter;
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Autowired
+    public MemberSearchExecutor(@Value("${member.async.enabled:false}") boolean enabled,
+                                @Value("${member.async.queue-capacity:-1}") int queueCapacity,
+                                ConnectionPoolSize connectionPoolSize,
+                                @Value("${querydsl.page.parallel-count.enabled:false}") boolean parallelCount,
+                                StatementCounter statementCounter) {
+        this(enabled, queueCapacity, connectionPoolSize.get(), parallelCount, statementCounter);
+    }
+
+    public MemberSearchExecutor(boolean enabled, int queueCapacity, int connectionPoolSize, boolean parallelCount,
+                                StatementCounter statementCounter) {
+        this.enabled = enabled;
+        this.statementCounter = statementCounter;
+        int threads = Math.max(1, parallelCount ? connectionPoolSize - connectionPoolSize / 2 : connectionPoolSize);
+        int capacity = queueCapacity < 0 ? threads * 2 : queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                capacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(capacity),
+                new CustomizableThreadFactory("member-search-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> query) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(query.get());
+        }
+        try {
+            // 요청 범위(StatementBudgetFilter)를 검색 스레드에도 걸어서 여기서 실행한 sql도 요청 예산에 센다.
+            // 방금 쓴 클라이언트의 검색이 primary로 가도록 ReadYourWrites도 넘긴다.
+            return CompletableFuture.supplyAsync(ReadYourWrites.propagate(statementCounter.propagate(query)), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new SearchRejectedException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,111 @@
+package com.study.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.querydsl.core.Tuple;
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.repository.MemberQdslRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+// 검색 결과를 NDJSON(한 줄에 json 하나)으로 읽는 즉시 응답에 써준다.
+// 결과를 List로 모으지 않기 때문에 결과가 아무리 많아도 힙 사용량이 일정하다.
+@Component
+public class MemberStreamWriter {
+    private static final int NEWLINE = '\n';
+    // 필드명은 미리 인코딩해둔다. 이름은 MemberTeamDto와 같다.
+    private static final SerializableString MEMBER_ID = new SerializedString("memberId");
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString AGE = new SerializedString("age");
+    private static final SerializableString TEAM_ID = new SerializedString("teamId");
+    private static final SerializableString TEAM_NAME = new SerializedString("teamName");
+
+    private final MemberQdslRepository memberQdslRepository;
+    private final ObjectWriter rowWriter;
+    private final JsonFactory jsonFactory;
+    private final TransactionTemplate readOnlyTx;
+
+    public MemberStreamWriter(MemberQdslRepository memberQdslRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager) {
+        this.memberQdslRepository = memberQdslRepository;
+        this.rowWriter = objectMapper.writerFor(MemberTeamDto.class);
+        this.jsonFactory = objectMapper.getFactory();
+        // 스트림을 다 읽을 때까지 커넥션(커서)이 열려 있어야 하므로 트랜잭션으로 감싼다.
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    public void write(MemberSearchCondition condition, OutputStream out) {
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<MemberTeamDto> rows = memberQdslRepository.searchStream(condition)) {
+                rows.forEach(row -> writeLine(row, out));
+            }
+        });
+    }
+
+    /**
+     * v1과 같은 결과를 json 배열로 쓴다. 결과는 /v1/members와 같다.
+     * MemberTeamDto 목록을 만들고 jackson이 다시 리플렉션으로 읽는 대신, Tuple 값을 JsonGenerator에 바로 쓴다.
+     */
+    public void writeJsonArray(MemberSearchCondition condition, OutputStream out) {
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<Tuple> rows = memberQdslRepository.searchTupleStream(condition);
+                 // 응답 스트림은 스프링이 닫는다.
+                 JsonGenerator generator = jsonFactory.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.writeStartArray();
+                rows.forEach(row -> writeRow(row, generator));
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeRow(Tuple row, JsonGenerator generator) {
+        try {
+            generator.writeStartObject();
+            writeNumber(generator, MEMBER_ID, row.get(0, Long.class));
+            generator.writeFieldName(USERNAME);
+            generator.writeString(row.get(1, String.class));
+            generator.writeFieldName(AGE);
+            generator.writeNumber(row.get(2, Integer.class));
+            writeNumber(generator, TEAM_ID, row.get(3, Long.class));
+            generator.writeFieldName(TEAM_NAME);
+            generator.writeString(row.get(4, String.class));
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeNumber(JsonGenerator generator, SerializableString name, Long value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private void writeLine(MemberTeamDto row, OutputStream out) {
+        try {
+            out.write(rowWriter.writeValueAsBytes(row));
+            out.write(NEWLINE);
+        } catch (IOException e) {
+            // 클라이언트가 끊은 경우 등. 트랜잭션을 롤백하고 커서를 닫도록 그대로 던진다.
+            throw new UncheckedIOException(e);
+        }
+    }
+}
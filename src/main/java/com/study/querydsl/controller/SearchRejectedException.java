@@ -0,0 +1,12 @@
+package com.study.querydsl.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// 검색 실행기의 스레드와 대기열이 모두 찬 경우. 서블릿 스레드를 붙잡고 기다리지 않고 바로 503을 돌려준다.
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "too many concurrent searches")
+public class SearchRejectedException extends RuntimeException {
+    public SearchRejectedException(Throwable cause) {
+        super(cause);
+    }
+}
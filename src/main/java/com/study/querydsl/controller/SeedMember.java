@@ -0,0 +1,30 @@
+package com.study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+// seed 프로필로 실행하면 InitMember 대신 대량 데이터를 넣는다.
+// ex) --spring.profiles.active=seed --seed.members=1000000 --seed.teams=100
+@Slf4j
+@Profile("seed")
+@Component
+@RequiredArgsConstructor
+public class SeedMember implements ApplicationRunner {
+    private final MemberDataSeeder memberDataSeeder;
+    @Value("${seed.teams:10}")
+    private int teamCount;
+    @Value("${seed.members:100000}")
+    private int memberCount;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        memberDataSeeder.seed(teamCount, memberCount);
+        log.info("seeded {} members in {} teams ({} ms)", memberCount, teamCount, System.currentTimeMillis() - start);
+    }
+}
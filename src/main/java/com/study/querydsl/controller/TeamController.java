@@ -0,0 +1,21 @@
+package com.study.querydsl.controller;
+
+import com.study.querydsl.dto.TeamStatsDto;
+import com.study.querydsl.repository.TeamStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+    private final TeamStatistics teamStatistics;
+
+    // 팀별 회원 수, 나이 합/평균/최소/최대. 메모리에 들고 있는 값이라 팀 수만큼만 읽는다.
+    @GetMapping("/teams/stats")
+    public List<TeamStatsDto> teamStats() {
+        return teamStatistics.getStats();
+    }
+}
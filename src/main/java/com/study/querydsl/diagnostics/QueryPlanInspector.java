@@ -0,0 +1,139 @@
+package com.study.querydsl.diagnostics;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.QueryPlanReport;
+import com.study.querydsl.repository.MemberRepository;
+import com.study.querydsl.repository.MemberSearchShape;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static com.study.querydsl.repository.MemberSearchShape.*;
+
+// 회원 검색 조건 모양(16가지)마다 v2(searchPageSimple), v3(searchPageComplex)를 실제로 실행해서
+// hibernate가 만든 sql을 StatementCounter로 잡고, 그 sql에 H2 EXPLAIN을 돌려서 인덱스를 타는지 확인한다.
+// 스키마나 검색 조건이 바뀌었을 때 풀 스캔이 생기지 않았는지 보는 용도. (H2 전용, diagnostics.query-plans.enabled)
+// 실행했는데 content나 count 쿼리가 나가지 않았으면(팀이 하나도 없어서 팀명 조건이 바로 빈 결과가 된 경우 등)
+// 그 쿼리는 inspected=false로 보고한다. findTableScans에도 같이 나온다. (못 본 것을 풀 스캔 없음으로 치지 않게)
+@Component
+@ConditionalOnProperty(name = "diagnostics.query-plans.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class QueryPlanInspector {
+    // H2는 인덱스 없이 읽으면 계획에 /* PUBLIC.MEMBER.tableScan */ 처럼 표시한다.
+    private static final String TABLE_SCAN = ".tableScan";
+    // 두 번째 페이지를 읽어야 content가 비어도 count 쿼리가 나간다. (PageableExecutionUtils)
+    private static final Pageable SECOND_PAGE = PageRequest.of(1, 10);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemberRepository memberRepository;
+    private final StatementCounter statementCounter;
+
+    // 쓰기 트랜잭션 안에서는 count 캐시를 쓰지 않으므로(MemberCountCache) 모양마다 count 쿼리가 실제로 나간다.
+    @Transactional
+    public List<QueryPlanReport> inspect() {
+        String databaseName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"H2".equals(databaseName)) {
+            throw new IllegalStateException("Query plan inspection supports H2 only: " + databaseName);
+        }
+        // 팀이 없으면 팀명 조건은 조회 없이 빈 결과가 되므로 그 모양은 inspected=false로 나온다.
+        String teamName = jdbcTemplate.query("select name from team limit 1",
+                rs -> rs.next() ? rs.getString(1) : "noSuchTeam");
+        List<QueryPlanReport> reports = new ArrayList<>();
+        for (MemberSearchShape shape : MemberSearchShape.all()) {
+            MemberSearchCondition condition = sampleCondition(shape, teamName);
+            reports.addAll(explainAll(shape, "searchPageSimple", condition, memberRepository::searchPageSimple));
+            reports.addAll(explainAll(shape, "searchPageComplex", condition, memberRepository::searchPageComplex));
+        }
+        return reports;
+    }
+
+    @Transactional
+    public List<QueryPlanReport> findTableScans() {
+        return inspect().stream()
+                .filter(report -> report.isTableScan() || !report.isInspected())
+                .collect(Collectors.toList());
+    }
+
+    private List<QueryPlanReport> explainAll(MemberSearchShape shape, String method, MemberSearchCondition condition,
+                                             BiFunction<MemberSearchCondition, Pageable, ?> search) {
+        List<String> statements;
+        try (StatementScope scope = statementCounter.capture("explain " + method)) {
+            search.apply(condition, SECOND_PAGE);
+            statements = scope.getStats().getStatements();
+        }
+        List<QueryPlanReport> reports = new ArrayList<>();
+        Set<String> explained = new HashSet<>();
+        for (String sql : statements) {
+            // 팀명 -> 팀 id 조회(TeamDirectory)처럼 검색 쿼리가 아닌 것은 뺀다.
+            if (!sql.toLowerCase().contains("from member")) {
+                continue;
+            }
+            String query = method + (sql.trim().toLowerCase().startsWith("select count") ? ".count" : ".content");
+            String plan = explain(sql);
+            reports.add(new QueryPlanReport(shape.toString(), query, sql, plan, plan != null && plan.contains(TABLE_SCAN), true));
+            explained.add(query);
+        }
+        for (String query : new String[]{method + ".content", method + ".count"}) {
+            if (!explained.contains(query)) {
+                reports.add(QueryPlanReport.notInspected(shape.toString(), query));
+            }
+        }
+        return reports;
+    }
+
+    // 계획만 보는 것이라 값은 타입만 맞으면 아무거나 넣어도 된다.
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+                ParameterMetaData parameters = statement.getParameterMetaData();
+                for (int i = 1; i <= parameters.getParameterCount(); i++) {
+                    bindSample(statement, i, parameters.getParameterType(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getString(1) : null;
+                }
+            }
+        });
+    }
+
+    private void bindSample(PreparedStatement statement, int index, int type) throws SQLException {
+        switch (type) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                statement.setString(index, "member1");
+                break;
+            default:
+                statement.setLong(index, 1L);
+        }
+    }
+
+    private MemberSearchCondition sampleCondition(MemberSearchShape shape, String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if (shape.has(USERNAME)) condition.setUsername("member1");
+        if (shape.has(TEAM_NAME)) condition.setTeamName(teamName);
+        if (shape.has(AGE_GOE)) condition.setAgeGoe(20);
+        if (shape.has(AGE_LOE)) condition.setAgeLoe(40);
+        return condition;
+    }
+}
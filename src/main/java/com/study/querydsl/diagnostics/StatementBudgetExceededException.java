@@ -0,0 +1,15 @@
+package com.study.querydsl.diagnostics;
+
+// statement-budget.mode=throw 일 때 예산을 넘긴 sql을 실행하기 직전에 던진다.
+public class StatementBudgetExceededException extends RuntimeException {
+    private final StatementStats stats;
+
+    public StatementBudgetExceededException(String message, StatementStats stats) {
+        super(message);
+        this.stats = stats;
+    }
+
+    public StatementStats getStats() {
+        return stats;
+    }
+}
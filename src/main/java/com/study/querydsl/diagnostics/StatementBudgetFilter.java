@@ -0,0 +1,83 @@
+package com.study.querydsl.diagnostics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// HTTP 요청 하나를 sql 예산 범위로 잡는다. (open-in-view로 뷰에서 일어나는 지연 로딩까지 포함)
+// 비동기 요청(v1~v3의 CompletableFuture)이면 요청이 끝날 때(onComplete) 범위를 닫고,
+// async dispatch에서도 같은 범위를 다시 건다. 검색 스레드에서 실행한 sql은 MemberSearchExecutor가 넘겨준다.
+@RequiredArgsConstructor
+public class StatementBudgetFilter extends OncePerRequestFilter {
+    private static final String STATS_ATTRIBUTE = StatementBudgetFilter.class.getName() + ".STATS";
+
+    private final StatementCounter statementCounter;
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            StatementStats stats = (StatementStats) request.getAttribute(STATS_ATTRIBUTE);
+            if (stats == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            try (StatementScope ignored = statementCounter.attach(stats)) {
+                filterChain.doFilter(request, response);
+            }
+            return;
+        }
+        StatementScope scope = statementCounter.open(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // 요청 스레드는 다른 요청을 받으러 가므로 떼어 두고, 비동기 처리가 끝나면 닫는다.
+                scope.detach();
+                request.setAttribute(STATS_ATTRIBUTE, scope.getStats());
+                request.getAsyncContext().addListener(new CloseOnComplete(scope));
+            } else {
+                scope.close();
+            }
+        }
+    }
+
+    private static class CloseOnComplete implements AsyncListener {
+        private final StatementScope scope;
+
+        CloseOnComplete(StatementScope scope) {
+            this.scope = scope;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            scope.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        // 비동기가 다시 시작되면 리스너가 지워지므로 다시 건다.
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
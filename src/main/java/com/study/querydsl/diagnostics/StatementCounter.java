@@ -0,0 +1,181 @@
+package com.study.querydsl.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * hibernate가 실행하는 sql을 범위(HTTP 요청, 트랜잭션)별로 세서 N+1을 찾는다.
+ * <ul>
+ *     <li>max-statements - 한 범위에서 실행할 수 있는 sql 수</li>
+ *     <li>max-repeats - 같은 템플릿의 sql을 실행할 수 있는 수 (member.getTeam().getName() 같은 지연 로딩 반복)</li>
+ *     <li>mode - log(경고 로그), metric(sql.statement.budget.exceeded 카운터), throw(예외)</li>
+ * </ul>
+ * 요청 범위는 {@link StatementBudgetFilter}가 열고, 요청 밖(스케줄러, 스트리밍 응답 등)에서는 트랜잭션마다 범위가 열린다.
+ * 범위가 겹치면 바깥 범위에도 같이 센다. 다른 스레드에서 실행하는 작업은 {@link #propagate}로 범위를 넘긴다.
+ */
+@Slf4j
+@Component
+public class StatementCounter implements StatementInspector {
+
+    public enum Mode {LOG, METRIC, THROW}
+
+    private final ThreadLocal<Deque<StatementStats>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+    private final boolean enabled;
+    private final Mode mode;
+    private final int maxStatements;
+    private final int maxRepeats;
+    private final MeterRegistry registry;
+
+    public StatementCounter(@Value("${diagnostics.statement-budget.enabled:true}") boolean enabled,
+                            @Value("${diagnostics.statement-budget.mode:log}") Mode mode,
+                            @Value("${diagnostics.statement-budget.max-statements:50}") int maxStatements,
+                            @Value("${diagnostics.statement-budget.max-repeats:10}") int maxRepeats,
+                            MeterRegistry registry) {
+        this.enabled = enabled;
+        this.mode = mode;
+        this.maxStatements = maxStatements;
+        this.maxRepeats = maxRepeats;
+        this.registry = registry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Deque<StatementStats> stack = scopes.get();
+        if (!enabled) {
+            // 예산 검사는 꺼도 capture로 연 범위는 sql을 모은다.
+            if (stack.isEmpty()) {
+                scopes.remove();
+            } else {
+                stack.stream().filter(StatementStats::isCapturing).forEach(stats -> stats.record(sql));
+            }
+            return sql;
+        }
+        if (stack.isEmpty() && !openTransactionScope()) {
+            return sql;
+        }
+        for (StatementStats stats : stack) {
+            int repeats = stats.record(sql);
+            // throw 모드는 close 까지 기다리지 않고 넘기는 순간 실행을 막는다.
+            if (mode == Mode.THROW && (stats.getCount() > maxStatements || repeats > maxRepeats)) {
+                throw new StatementBudgetExceededException("sql 실행 예산 초과: " + stats + "\n" + StatementStats.template(sql), stats);
+            }
+        }
+        return sql;
+    }
+
+    public StatementScope open(String name) {
+        return open(new StatementStats(name));
+    }
+
+    // open과 같지만 실행된 sql 원문도 모은다. (StatementStats.getStatements)
+    public StatementScope capture(String name) {
+        return open(new StatementStats(name, true));
+    }
+
+    private StatementScope open(StatementStats stats) {
+        scopes.get().push(stats);
+        return new StatementScope(this, stats, false);
+    }
+
+    // 현재 스레드에서 가장 안쪽 범위, 없으면 null
+    public StatementStats current() {
+        return scopes.get().peek();
+    }
+
+    /**
+     * 지금 스레드에 열린 범위를 task를 실행하는 스레드에도 건다. (MemberSearchExecutor, ParallelCountExecutor)
+     * 범위는 ThreadLocal이라 그냥 넘기면 다른 스레드에서 실행한 sql은 요청 범위에 잡히지 않는다.
+     */
+    public <T> Supplier<T> propagate(Supplier<T> task) {
+        Deque<StatementStats> stack = scopes.get();
+        if (stack.isEmpty()) {
+            scopes.remove();
+            return task;
+        }
+        List<StatementStats> captured = new ArrayList<>(stack);
+        return () -> {
+            Deque<StatementScope> attached = new ArrayDeque<>();
+            // 바깥 범위부터 쌓아서 원래 순서를 지킨다.
+            for (int i = captured.size() - 1; i >= 0; i--) {
+                attached.push(attach(captured.get(i)));
+            }
+            try {
+                return task.get();
+            } finally {
+                attached.forEach(StatementScope::close);
+            }
+        };
+    }
+
+    // 다른 스레드에서 연 범위를 이 스레드에도 건다. 돌려준 범위를 닫으면 떼기만 하고, 예산 검사는 원래 범위를 닫을 때 한다.
+    StatementScope attach(StatementStats stats) {
+        scopes.get().push(stats);
+        return new StatementScope(this, stats, true);
+    }
+
+    // 이 스레드에서만 뗀다.
+    void detach(StatementStats stats) {
+        Deque<StatementStats> stack = scopes.get();
+        stack.remove(stats);
+        if (stack.isEmpty()) {
+            scopes.remove();
+        }
+    }
+
+    void close(StatementStats stats) {
+        detach(stats);
+        check(stats);
+    }
+
+    private boolean openTransactionScope() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        StatementScope scope = open("tx " + (name == null ? "" : name));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                scope.close();
+            }
+        });
+        return true;
+    }
+
+    private void check(StatementStats stats) {
+        String kind = stats.getName().startsWith("tx ") ? "transaction" : "scope";
+        if (mode == Mode.METRIC) {
+            DistributionSummary.builder("sql.statements")
+                    .tag("scope", kind)
+                    .register(registry)
+                    .record(stats.getCount());
+        }
+        boolean tooMany = stats.getCount() > maxStatements;
+        boolean repeated = stats.getMaxRepeats() > maxRepeats;
+        if (!tooMany && !repeated) {
+            return;
+        }
+        if (mode == Mode.METRIC) {
+            Counter.builder("sql.statement.budget.exceeded")
+                    .tag("scope", kind)
+                    .tag("reason", repeated ? "repeated" : "total")
+                    .register(registry)
+                    .increment();
+        } else if (mode == Mode.LOG) {
+            log.warn("sql 실행 예산 초과 ({}): {} repeated={}", stats.getName(), stats, stats.getRepeatedTemplates(maxRepeats + 1));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.study.querydsl.diagnostics;
+
+/**
+ * {@link StatementCounter#open(String)}로 연 범위. close 할 때 예산을 검사한다.
+ * <pre>
+ * try (StatementScope scope = statementCounter.open("test")) {
+ *     ...
+ *     assertThat(scope.getCount()).isEqualTo(1);
+ * }
+ * </pre>
+ */
+public class StatementScope implements AutoCloseable {
+    private final StatementCounter counter;
+    private final StatementStats stats;
+    // 다른 스레드에서 연 범위를 빌려 건 것이면 닫을 때 떼기만 한다. (StatementCounter.attach)
+    private final boolean attached;
+    private boolean closed;
+
+    StatementScope(StatementCounter counter, StatementStats stats, boolean attached) {
+        this.counter = counter;
+        this.stats = stats;
+        this.attached = attached;
+    }
+
+    public StatementStats getStats() {
+        return stats;
+    }
+
+    public int getCount() {
+        return stats.getCount();
+    }
+
+    public int getMaxRepeats() {
+        return stats.getMaxRepeats();
+    }
+
+    // 닫지 않고 지금 스레드에서만 뗀다. 비동기 요청처럼 다른 스레드에서 닫을 때 쓴다.
+    void detach() {
+        counter.detach(stats);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (attached) {
+            counter.detach(stats);
+        } else {
+            counter.close(stats);
+        }
+    }
+}
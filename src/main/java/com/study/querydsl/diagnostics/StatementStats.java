@@ -0,0 +1,86 @@
+package com.study.querydsl.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 한 범위(HTTP 요청, 트랜잭션, 직접 연 {@link StatementScope}) 안에서 실행된 sql 통계
+ * 파라미터 값은 ?로 바인딩되므로 같은 쿼리가 반복되면 같은 템플릿으로 잡힌다. (N+1)
+ * 요청 스레드와 검색/count 스레드가 같은 범위에 동시에 기록할 수 있으므로 synchronized로 감싼다.
+ */
+public class StatementStats {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // in (?, ?, ?) 처럼 개수만 다른 in 절은 같은 템플릿으로 본다.
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    private final String name;
+    private final Map<String, Integer> templates = new LinkedHashMap<>();
+    // capture로 연 범위만 실행된 sql 원문을 그대로 모은다. (QueryPlanInspector)
+    private final List<String> statements;
+    private int count;
+
+    StatementStats(String name) {
+        this(name, false);
+    }
+
+    StatementStats(String name, boolean capture) {
+        this.name = name;
+        this.statements = capture ? new ArrayList<>() : null;
+    }
+
+    // 반복 횟수를 돌려준다.
+    synchronized int record(String sql) {
+        count++;
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return templates.merge(template(sql), 1, Integer::sum);
+    }
+
+    boolean isCapturing() {
+        return statements != null;
+    }
+
+    // 실행된 순서대로의 sql 원문. capture로 연 범위가 아니면 비어 있다.
+    public synchronized List<String> getStatements() {
+        return statements == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(statements));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized int getMaxRepeats() {
+        return templates.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    // threshold 번 이상 실행된 템플릿과 실행 횟수
+    public synchronized Map<String, Integer> getRepeatedTemplates(int threshold) {
+        return templates.entrySet().stream()
+                .filter(e -> e.getValue() >= threshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    public synchronized Map<String, Integer> getTemplates() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(templates));
+    }
+
+    static String template(String sql) {
+        String normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return IN_LIST.matcher(normalized).replaceAll("(?...)");
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " statements=" + count + " maxRepeats=" + getMaxRepeats();
+    }
+}
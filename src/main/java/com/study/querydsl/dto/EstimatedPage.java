@@ -0,0 +1,21 @@
+package com.study.querydsl.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+// total이 count(*) 결과가 아니라 추정치일 수 있는 페이지 (MemberCountEstimator)
+// estimated = true면 totalElements, totalPages는 대략적인 값이다.
+public class EstimatedPage<T> extends PageImpl<T> {
+    private final boolean estimated;
+
+    public EstimatedPage(List<T> content, Pageable pageable, long total, boolean estimated) {
+        super(content, pageable, total);
+        this.estimated = estimated;
+    }
+
+    public boolean isEstimated() {
+        return estimated;
+    }
+}
@@ -0,0 +1,14 @@
+package com.study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// offset 대신 커서(마지막으로 읽은 member.id)로 다음 페이지를 찾는 keyset 페이징 결과
+// nextCursor는 클라이언트가 그대로 돌려주는 불투명한 토큰이다.
+@Data
+public class MemberCursorPage {
+    private final List<MemberTeamDto> content;
+    private final String nextCursor;
+    private final boolean hasNext;
+}
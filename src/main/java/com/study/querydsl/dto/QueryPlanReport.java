@@ -0,0 +1,20 @@
+package com.study.querydsl.dto;
+
+import lombok.Data;
+
+// 검색 조건 모양 하나에 대한 실행 계획
+@Data
+public class QueryPlanReport {
+    private final String shape;
+    // content(목록 조회) 또는 count
+    private final String query;
+    private final String sql;
+    private final String plan;
+    private final boolean tableScan;
+    // false면 이 쿼리가 나가지 않아서 계획을 못 봤다. (sql, plan은 null) 풀 스캔이 없다는 뜻이 아니다.
+    private final boolean inspected;
+
+    public static QueryPlanReport notInspected(String shape, String query) {
+        return new QueryPlanReport(shape, query, null, null, false, false);
+    }
+}
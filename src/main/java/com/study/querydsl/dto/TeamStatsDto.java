@@ -0,0 +1,15 @@
+package com.study.querydsl.dto;
+
+import lombok.Data;
+
+// 팀별 회원 나이 통계. 회원이 없으면 count = 0, avg/min/max는 null
+@Data
+public class TeamStatsDto {
+    private final Long teamId;
+    private final String teamName;
+    private final long count;
+    private final long sum;
+    private final Double avg;
+    private final Integer min;
+    private final Integer max;
+}
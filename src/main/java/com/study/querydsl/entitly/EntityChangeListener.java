@@ -0,0 +1,39 @@
+package com.study.querydsl.entitly;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import static com.study.querydsl.entitly.EntityChangedEvent.ChangeType.*;
+
+// JPA 엔티티 리스너. 스프링 부트가 hibernate에 SpringBeanContainer를 넣어주기 때문에 생성자 주입이 된다.
+// 벌크 연산(update/delete 쿼리)은 영속성 컨텍스트를 거치지 않으므로 여기로 들어오지 않는다.
+@Component
+@RequiredArgsConstructor
+public class EntityChangeListener {
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        publish(PERSIST, entity);
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        publish(UPDATE, entity);
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        publish(REMOVE, entity);
+    }
+
+    private void publish(EntityChangedEvent.ChangeType changeType, Object entity) {
+        eventPublisher.publishEvent(new EntityChangedEvent(Hibernate.getClass(entity), changeType, entity));
+    }
+}
@@ -0,0 +1,44 @@
+package com.study.querydsl.entitly;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+
+// Member, Team이 저장/수정/삭제되었을 때 발행되는 이벤트
+// 캐시처럼 DB 내용을 들고 있는 쪽에서 받아서 무효화한다.
+// 벌크 연산은 엔티티 없이 바뀐 id 목록(ids)만 담아서 BULK로 발행한다. (MemberBulkOperations)
+@Getter
+@ToString(of = {"entityType", "changeType"})
+public class EntityChangedEvent {
+    public enum ChangeType { PERSIST, UPDATE, REMOVE, BULK }
+
+    private final Class<?> entityType;
+    private final ChangeType changeType;
+    private final Object entity;
+    private final List<Long> ids;
+
+    public EntityChangedEvent(Class<?> entityType, ChangeType changeType, Object entity) {
+        this(entityType, changeType, entity, Collections.emptyList());
+    }
+
+    private EntityChangedEvent(Class<?> entityType, ChangeType changeType, Object entity, List<Long> ids) {
+        this.entityType = entityType;
+        this.changeType = changeType;
+        this.entity = entity;
+        this.ids = ids;
+    }
+
+    public static EntityChangedEvent bulk(Class<?> entityType, List<Long> ids) {
+        return new EntityChangedEvent(entityType, ChangeType.BULK, null, Collections.unmodifiableList(ids));
+    }
+
+    public boolean isAbout(Class<?> type) {
+        return type.isAssignableFrom(entityType);
+    }
+
+    public boolean isBulk() {
+        return changeType == ChangeType.BULK;
+    }
+}
@@ -7,13 +7,22 @@ import javax.persistence.*;
 // toString에 team을 넣으면 안된다. 넣으면 team에서 member에 접근하고 이러니까 무한 루프에 빠질 수 있다.
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
+// 검색 조건(usernameEq, teamNameEq -> team_id, ageGoe/ageLoe)에 맞춘 인덱스
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age"),
+        @Index(name = "idx_member_age", columnList = "age")
+})
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
     @Id
-    @GeneratedValue
+    // 시퀀스를 50개씩 미리 받아와서(pooled) insert마다 시퀀스를 조회하지 않는다. 그래야 insert가 배치로 묶인다.
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -2,23 +2,31 @@ package com.study.querydsl.entitly;
 
 import com.study.querydsl.entitly.Member;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 // jpa에서는 기본 생성자가 필요하기 때문에 기본 생성자를 protected level까지 허용
 @Entity
+// member.getTeam() 프록시를 초기화할 때 영속성 컨텍스트에 있는 다른 팀 프록시도 같이 초기화한다.
+// 연관관계별 크기는 hibernate.default_batch_fetch_size 대신 여기 값을 쓴다.
+@BatchSize(size = 100)
+@EntityListeners(EntityChangeListener.class)
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
     @Column(name = "team_id")
     private Long id;
     private String name;
     @OneToMany(mappedBy = "team")
+    @BatchSize(size = 100)
     private List<Member> members = new ArrayList<>();
 
     public Team(String name) {
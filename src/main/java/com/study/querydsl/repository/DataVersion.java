@@ -0,0 +1,52 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Member, Team 테이블의 버전. 둘 중 하나라도 바뀌면 올라간다. (ETag 용)
+// 이벤트는 커밋 전에 오기 때문에, 그 사이에 옛 데이터로 만든 응답이 새 버전을 달고 나가지 않도록
+// 트랜잭션이 끝날 때 한 번 더 올린다.
+// 메모리에만 있으므로 재시작하면 처음부터 다시 센다. 그래서 시작 시각(epoch)을 같이 쓴다.
+@Component
+public class DataVersion {
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+            bump();
+        }
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+        // 트랜잭션마다 한 번만 등록한다. (seed 처럼 한 트랜잭션에서 많이 저장하는 경우)
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DataVersion.this);
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.study.querydsl.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// 페이지 크기, 커서처럼 클라이언트가 준 값이 잘못된 경우. 컨트롤러까지 올라오면 400
+// IllegalArgumentException을 상속하면 레포지토리 프록시가 InvalidDataAccessApiUsageException(500)으로 바꿔버린다.
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidSearchRequestException extends RuntimeException {
+    public InvalidSearchRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidSearchRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,186 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.study.querydsl.entitly.QMember.member;
+
+/**
+ * 회원 벌크 수정/삭제를 id 구간(chunk-size) 단위로 나눠서 실행한다.
+ * <p>
+ * queryFactory.update(member)...execute() 한 번으로 테이블 전체를 바꾸면 문장이 끝날 때까지 락을 잡고 있고,
+ * 영속성 컨텍스트를 통째로 flush/clear 해야 한다.
+ * 여기서는 구간마다 새 트랜잭션(REQUIRES_NEW)으로 커밋하고, 구간 사이에 throttle 만큼 쉬어서 다른 조회가 끼어들 수 있게 한다.
+ * 커밋 후에는 호출한 쪽 영속성 컨텍스트에서 바뀐 회원만 detach 하고, 바뀐 id로 {@link EntityChangedEvent#bulk} 를 발행한다.
+ * <p>
+ * 구간마다 따로 커밋하므로 전체가 원자적이지 않다. 중간에 실패하면 그 앞 구간까지는 반영된 상태로 예외가 올라간다.
+ * 호출한 트랜잭션이 이미 수정한 회원을 다시 수정하면 락을 기다리게 되므로 트랜잭션 밖에서 호출하는 것이 좋다.
+ */
+@Component
+public class MemberBulkOperations {
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate chunkTx;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final Duration throttle;
+
+    public MemberBulkOperations(EntityManager em,
+                                EntityManagerFactory emf,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${member.bulk.chunk-size:1000}") int chunkSize,
+                                @Value("${member.bulk.throttle:0ms}") Duration throttle) {
+        this.em = em;
+        this.emf = emf;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.throttle = throttle;
+    }
+
+    // 구간 하나가 끝날 때마다 progress로 알려준다.
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class BulkProgress {
+        private final int chunk;
+        private final long lastId;
+        private final long maxId;
+        private final long chunkRows;
+        private final long totalRows;
+    }
+
+    public long update(Predicate condition, Consumer<JPAUpdateClause> assignments) {
+        return update(condition, assignments, progress -> { });
+    }
+
+    /**
+     * 예) 나이 + 1
+     * <pre>
+     * bulkOperations.update(member.age.lt(28), clause -> clause.set(member.age, member.age.add(1)));
+     * </pre>
+     */
+    public long update(Predicate condition, Consumer<JPAUpdateClause> assignments, Consumer<BulkProgress> progress) {
+        return run(condition, ids -> {
+            JPAUpdateClause clause = queryFactory.update(member);
+            assignments.accept(clause);
+            // 조회한 뒤에 다른 트랜잭션이 바꿔서 조건에 안 맞게 된 회원은 건드리지 않도록 조건을 다시 건다.
+            return clause.where(member.id.in(ids), condition).execute();
+        }, progress);
+    }
+
+    public long delete(Predicate condition) {
+        return delete(condition, progress -> { });
+    }
+
+    public long delete(Predicate condition, Consumer<BulkProgress> progress) {
+        return run(condition, ids -> queryFactory
+                .delete(member)
+                .where(member.id.in(ids), condition)
+                .execute(), progress);
+    }
+
+    private interface ChunkStatement {
+        long execute(List<Long> ids);
+    }
+
+    private long run(Predicate condition, ChunkStatement statement, Consumer<BulkProgress> progress) {
+        NumberExpression<Long> min = member.id.min();
+        NumberExpression<Long> max = member.id.max();
+        Tuple bounds = queryFactory
+                .select(min, max)
+                .from(member)
+                .where(condition)
+                .fetchOne();
+        if (bounds == null || bounds.get(min) == null) {
+            return 0;
+        }
+        long minId = bounds.get(min);
+        long maxId = bounds.get(max);
+        // 구간을 실행하는 동안 REQUIRES_NEW로 호출한 트랜잭션이 잠시 멈추므로 그 엔티티 매니저를 미리 잡아둔다.
+        EntityManager callerEm = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+
+        long total = 0;
+        int chunk = 0;
+        for (long from = minId; from <= maxId; from += chunkSize) {
+            long to = Math.min(from + chunkSize - 1, maxId);
+            List<Long> ids = queryFactory
+                    .select(member.id)
+                    .from(member)
+                    .where(member.id.between(from, to), condition)
+                    .fetch();
+            if (ids.isEmpty()) {
+                continue;
+            }
+            Long rows = chunkTx.execute(status -> statement.execute(ids));
+            total += rows;
+            chunk++;
+
+            evict(callerEm, ids);
+            eventPublisher.publishEvent(EntityChangedEvent.bulk(Member.class, ids));
+            progress.accept(new BulkProgress(chunk, to, maxId, rows, total));
+            if (to < maxId && !pause()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    // 영속성 컨텍스트에 올라와 있는 회원만 찾아서 detach 한다. (em.clear()로 전부 날리지 않는다)
+    private void evict(EntityManager callerEm, List<Long> ids) {
+        if (callerEm == null) {
+            return;
+        }
+        SessionImplementor session = callerEm.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        for (Long id : ids) {
+            EntityKey key = session.generateEntityKey(id, persister);
+            Object entity = session.getPersistenceContext().getEntity(key);
+            if (entity != null) {
+                callerEm.detach(entity);
+            }
+        }
+    }
+
+    // 인터럽트되면 남은 구간은 실행하지 않는다.
+    private boolean pause() {
+        if (throttle.isZero() || throttle.isNegative()) {
+            return true;
+        }
+        try {
+            Thread.sleep(throttle.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.AfterCompletion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.springframework.util.StringUtils.hasText;
+
+// searchPageComplex의 total count 캐시
+// 검색 조건별로 count 결과를 들고 있고, 크기 제한(LRU)과 TTL이 있다.
+// Member, Team에 쓰기가 일어나면 엔티티 리스너 이벤트를 받아 전부 비우고, 그 트랜잭션이 끝날 때 한 번 더 비운다.
+@Component
+public class MemberCountCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<MemberSearchCondition, CachedCount> counts;
+    // 무효화 횟수. count를 구하는 도중에 무효화가 일어나면 그 결과는 캐시에 넣지 않는다.
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public MemberCountCache(@Value("${member.count-cache.max-size:1000}") int maxSize,
+                            @Value("${member.count-cache.ttl:30s}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        // accessOrder = true -> 가장 오래 안 쓴 것부터 밀려난다.
+        this.counts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberSearchCondition, CachedCount> eldest) {
+                return size() > MemberCountCache.this.maxSize;
+            }
+        };
+    }
+
+    public long get(MemberSearchCondition condition, LongSupplier countQuery) {
+        // 쓰기 트랜잭션 안에서 구한 count는 커밋 안 된 row가 섞여 있을 수 있으므로 공유하지 않는다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return countQuery.getAsLong();
+        }
+        MemberSearchCondition key = normalize(condition);
+        long now = System.nanoTime();
+        synchronized (counts) {
+            CachedCount cached = counts.get(key);
+            if (cached != null && cached.expiresAt - now > 0) {
+                hitCount.incrementAndGet();
+                return cached.count;
+            }
+        }
+        missCount.incrementAndGet();
+        long startGeneration = generation.get();
+        long count = countQuery.getAsLong();
+        synchronized (counts) {
+            if (generation.get() == startGeneration) {
+                counts.put(key, new CachedCount(count, now + ttlNanos));
+            }
+        }
+        return count;
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+            invalidateAll();
+            // 커밋 전에 다른 트랜잭션이 센 count가 캐시에 들어갈 수 있으므로 끝날 때 한 번 더 비운다.
+            AfterCompletion.runOnce(this, this::invalidateAll);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (counts) {
+            generation.incrementAndGet();
+            counts.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int size() {
+        synchronized (counts) {
+            return counts.size();
+        }
+    }
+
+    // 빈 문자열은 조건이 없는 것과 같으므로(usernameEq, teamNameEq 참고) 같은 키가 되도록 맞춰준다.
+    // 조건 객체는 요청마다 바인딩되는 가변 객체라서 키로 쓸 때는 항상 복사한다.
+    private MemberSearchCondition normalize(MemberSearchCondition condition) {
+        MemberSearchCondition key = new MemberSearchCondition();
+        key.setUsername(hasText(condition.getUsername()) ? condition.getUsername() : null);
+        key.setTeamName(hasText(condition.getTeamName()) ? condition.getTeamName() : null);
+        key.setAgeGoe(condition.getAgeGoe());
+        key.setAgeLoe(condition.getAgeLoe());
+        return key;
+    }
+
+    private static class CachedCount {
+        private final long count;
+        private final long expiresAt;
+
+        CachedCount(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.dto.MemberSearchCondition;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static com.study.querydsl.entitly.QMember.member;
+
+/**
+ * 페이지 total을 count(*) 대신 추정한다. (/v2, /v3 의 estimatedCount=true)
+ * <ul>
+ *     <li>조건이 없으면 DB가 들고 있는 테이블 row 수 통계 (H2: INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE)</li>
+ *     <li>조건이 있으면 pk 구간 몇 개를 골라 그 안에서 조건에 맞는 비율(selectivity)을 세고 row 수에 곱한다.
+ *     구간은 pk 인덱스로 읽으므로 테이블 크기와 상관없이 sample-size 근처의 row만 읽는다.</li>
+ * </ul>
+ * 테이블이 sample-size보다 작거나 통계를 못 읽으면 그냥 센다. 이때는 estimated = false
+ */
+@Component
+public class MemberCountEstimator {
+    private static final String ROW_COUNT_ESTIMATE_SQL = "select ROW_COUNT_ESTIMATE from INFORMATION_SCHEMA.TABLES" +
+            " where TABLE_SCHEMA = CURRENT_SCHEMA and TABLE_NAME = 'MEMBER'";
+    // id 범위 전체에 고르게 흩어 놓을 표본 구간 수
+    private static final int WINDOWS = 10;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final MemberSearchPredicates predicates;
+    private final int sampleSize;
+
+    public MemberCountEstimator(EntityManager em, MemberSearchPredicates predicates,
+                                @Value("${member.search.estimate-sample-size:1000}") int sampleSize) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.predicates = predicates;
+        this.sampleSize = sampleSize;
+    }
+
+    public Estimate estimate(MemberSearchCondition condition) {
+        if (predicates.matchesNothing(condition)) {
+            return new Estimate(0, false);
+        }
+        // count 쿼리(searchPageComplex)와 같은 조건
+        Predicate where = predicates.withoutTeamJoin(condition);
+        long rows = tableRows();
+        if (rows < 0 || rows <= sampleSize) {
+            return new Estimate(count(where), false);
+        }
+        if (where == null) {
+            return new Estimate(rows, true);
+        }
+        return sample(where, rows);
+    }
+
+    // 구간 안의 전체 row 수와 조건에 맞는 row 수를 세서 비율을 구한다.
+    private Estimate sample(Predicate where, long rows) {
+        Tuple range = queryFactory.select(member.id.min(), member.id.max()).from(member).fetchOne();
+        Long minId = range.get(member.id.min());
+        Long maxId = range.get(member.id.max());
+        if (minId == null) {
+            return new Estimate(0, false);
+        }
+        long span = maxId - minId + 1;
+        // id가 span에 rows개 흩어져 있으므로, 구간 하나에 sampleSize / WINDOWS 개쯤 들어가는 폭
+        long width = Math.max(1, (long) ((double) span / rows * sampleSize / WINDOWS));
+        if (width * WINDOWS >= span) {
+            return new Estimate(count(where), false);
+        }
+        BooleanExpression windows = null;
+        for (int i = 0; i < WINDOWS; i++) {
+            long from = minId + (span - width) * i / (WINDOWS - 1);
+            BooleanExpression window = member.id.between(from, from + width - 1);
+            windows = windows == null ? window : windows.or(window);
+        }
+        long sampled = count(windows);
+        if (sampled == 0) {
+            return new Estimate(count(where), false);
+        }
+        long matched = count(ExpressionUtils.and(windows, where));
+        return new Estimate(Math.round((double) rows * matched / sampled), true);
+    }
+
+    private long count(Predicate where) {
+        return queryFactory.select(member.count()).from(member).where(where).fetchOne();
+    }
+
+    // 통계 쿼리가 실패해도 트랜잭션이 rollback-only가 되지 않도록 JDBC로 직접 읽는다.
+    private long tableRows() {
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(ROW_COUNT_ESTIMATE_SQL);
+                 ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : -1L;
+            } catch (SQLException e) {
+                // H2가 아니면 이 컬럼이 없다.
+                return -1L;
+            }
+        });
+    }
+
+    public static class Estimate {
+        private final long count;
+        private final boolean estimated;
+
+        public Estimate(long count, boolean estimated) {
+            this.count = count;
+            this.estimated = estimated;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public boolean isEstimated() {
+            return estimated;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
@@ -10,22 +11,41 @@ import com.study.querydsl.dto.QMemberDto;
 import com.study.querydsl.dto.QMemberTeamDto;
 import com.study.querydsl.entitly.Member;
 import com.study.querydsl.entitly.QMember;
+import com.study.querydsl.repository.support.EntityReadMode;
+import com.study.querydsl.repository.support.MeteredRepository;
+import com.study.querydsl.repository.support.ReadOnlyQueries;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static com.study.querydsl.entitly.QMember.*;
 import static com.study.querydsl.entitly.QTeam.*;
 import static org.springframework.util.StringUtils.*;
 
+// 조회만 하므로 읽기 전용 트랜잭션 -> replica 라우팅이 켜져 있으면 replica에서 읽는다.
 @Repository
+@Transactional(readOnly = true)
+@MeteredRepository
 public class MemberQdslRepository {
+    // 자동완성 한 번에 돌려주는 최대 수
+    public static final int MAX_TYPEAHEAD_SIZE = 50;
 //    JPAQueryFactory의 동시성 문제는 EntityManger에 의존
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    // stream으로 읽을 때 JDBC 드라이버가 한 번에 가져오는 row 수
+    private final int streamFetchSize;
+    private final MemberSearchPredicates predicates;
+    private final UsernameIndex usernameIndex;
+    // 엔티티를 돌려주는 조회(searchMember)를 읽는 방식
+    private final EntityReadMode entityReadMode;
 
 //        쿼리 팩토리를 spring bean으로 등록해도 된다.
 //        해당 방법은 Application 클래스에서 아래를 추가
@@ -39,12 +59,20 @@ public class MemberQdslRepository {
 //        this.queryFactory = queryFactory;
 //    }
 
-    public MemberQdslRepository(EntityManager em) {
+    public MemberQdslRepository(EntityManager em,
+                                @Value("${member.search.stream-fetch-size:500}") int streamFetchSize,
+                                MemberSearchPredicates predicates,
+                                UsernameIndex usernameIndex,
+                                @Value("${member.search.entity-read-mode:managed}") EntityReadMode entityReadMode) {
 //        순수 JPA이기 때문에 Entity에 접근할 때 EntityManger가 필요
 //        queryDSL을 사용하기 위해 JPAQueryFactory가 필요
 //        얘는 또 entityManger가 필요
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.streamFetchSize = streamFetchSize;
+        this.predicates = predicates;
+        this.usernameIndex = usernameIndex;
+        this.entityReadMode = entityReadMode;
     }
     public List<Member> findAll(){
         return queryFactory
@@ -108,10 +136,34 @@ public class MemberQdslRepository {
                 )
                 .fetch();
     }
-    // 이렇게 재사용 가능
-    public List<Member> searchMember(MemberSearchCondition condition) {
+    // search와 같은 조건이지만 List로 다 모으지 않고 커서로 한 줄씩 읽는다.
+    // 커넥션을 잡고 있어야 하므로 트랜잭션 안에서 쓰고, 다 쓰면 반드시 close 해야 한다.
+    public Stream<MemberTeamDto> searchStream(MemberSearchCondition condition) {
         return queryFactory
-                .selectFrom(member)
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .setHint(QueryHints.FETCH_SIZE, streamFetchSize)
+                .stream();
+    }
+    // searchStream과 같지만 dto를 만들지 않고 Tuple 그대로 돌려준다. 값은 인덱스로 꺼낸다.
+    // 0: memberId, 1: username, 2: age, 3: teamId, 4: teamName
+    public Stream<Tuple> searchTupleStream(MemberSearchCondition condition) {
+        return queryFactory
+                .select(member.id, member.username, member.age, team.id, team.name)
+                .from(member)
                 .leftJoin(member.team, team)
                 .where(
                         usernameEq(condition.getUsername()),
@@ -119,8 +171,63 @@ public class MemberQdslRepository {
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
+                .setHint(QueryHints.FETCH_SIZE, streamFetchSize)
+                .stream();
+    }
+    /**
+     * 회원명 자동완성. q로 시작하는(contains면 q를 포함하는) 회원을 회원명 순으로 limit 개
+     * 인덱스(UsernameIndex)가 켜져 있으면 후보 id를 먼저 찾아서 member.id in (...)으로 묻는다.
+     * 후보가 너무 많으면(max-candidates 초과) 인덱스 없이 like로 찾는다.
+     * 인덱스가 틀릴 수 있으므로 회원명 조건은 DB에서도 다시 건다.
+     */
+    public List<MemberTeamDto> searchTypeahead(String q, boolean contains, MemberSearchCondition condition, int limit) {
+        if (limit < 1 || limit > MAX_TYPEAHEAD_SIZE) {
+            throw new InvalidSearchRequestException("size must be between 1 and " + MAX_TYPEAHEAD_SIZE + ": " + limit);
+        }
+        if (!hasText(q)) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = null;
+        if (usernameIndex.isEnabled()) {
+            ids = contains ? usernameIndex.findIdsContaining(q) : usernameIndex.findIdsByPrefix(q);
+            if (ids != null && ids.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        BooleanExpression idIn = ids != null ? member.id.in(ids) : null;
+        BooleanExpression usernameMatches = contains ? member.username.containsIgnoreCase(q) : member.username.startsWithIgnoreCase(q);
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        idIn,
+                        usernameMatches,
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .orderBy(member.username.asc(), member.id.asc())
+                .limit(limit)
                 .fetch();
     }
+    // 이렇게 재사용 가능
+    // team은 조건으로만 쓰이므로 팀명을 팀 id로 바꿔 걸고 join을 하지 않는다.
+    public List<Member> searchMember(MemberSearchCondition condition) {
+        if (predicates.matchesNothing(condition)) {
+            return Collections.emptyList();
+        }
+        return ReadOnlyQueries.fetch(entityReadMode, em, factory -> factory
+                .selectFrom(member)
+                .where(predicates.withoutTeamJoin(condition)));
+    }
 
     private BooleanExpression usernameEq(String username) {
         return hasText(username) ? member.username.eq(username) : null;
@@ -130,6 +237,7 @@ public class MemberQdslRepository {
         return hasText(teamName) ? team.name.eq(teamName) : null;
     }
 
+
     private BooleanExpression ageGoe(Integer ageGoe) {
         return ageGoe != null ? member.age.goe(ageGoe) : null;
     }
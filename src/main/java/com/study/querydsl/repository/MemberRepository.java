@@ -1,13 +1,35 @@
 package com.study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
 import com.study.querydsl.entitly.Member;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, QuerydslPredicateExecutor<Member> {
                                     // 인터페이스 다중 상속 가능
                                                                     // QuerydslPredicateExecutor -> join 불가. 클라이언트가 querydsl에 의존
     List<Member> findByUsername(String username);
+
+    // QuerydslPredicateExecutor 조회도 읽기 전용 트랜잭션으로 실행해서 replica로 보낸다.
+    @Override
+    @Transactional(readOnly = true)
+    Optional<Member> findOne(Predicate predicate);
+
+    @Override
+    @Transactional(readOnly = true)
+    Iterable<Member> findAll(Predicate predicate);
+
+    @Override
+    @Transactional(readOnly = true)
+    Page<Member> findAll(Predicate predicate, Pageable pageable);
+
+    @Override
+    @Transactional(readOnly = true)
+    long count(Predicate predicate);
 }
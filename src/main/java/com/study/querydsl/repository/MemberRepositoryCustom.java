@@ -1,5 +1,6 @@
 package com.study.querydsl.repository;
 
+import com.study.querydsl.dto.MemberCursorPage;
 import com.study.querydsl.dto.MemberSearchCondition;
 import com.study.querydsl.dto.MemberTeamDto;
 import org.springframework.data.domain.Page;
@@ -11,4 +12,6 @@ public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable);
+    MemberCursorPage searchByCursor(MemberSearchCondition condition, String cursor, int size);
 }
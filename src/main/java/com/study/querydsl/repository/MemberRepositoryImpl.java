@@ -1,21 +1,32 @@
 package com.study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.dto.EstimatedPage;
+import com.study.querydsl.dto.MemberCursorPage;
 import com.study.querydsl.dto.MemberSearchCondition;
 import com.study.querydsl.dto.MemberTeamDto;
 import com.study.querydsl.dto.QMemberTeamDto;
 import com.study.querydsl.entitly.Member;
+import com.study.querydsl.repository.support.MeteredRepository;
+import com.study.querydsl.repository.support.ParallelCountExecutor;
+import com.study.querydsl.repository.support.RepositoryMetrics;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 
 import static com.study.querydsl.entitly.QMember.member;
@@ -23,7 +34,11 @@ import static com.study.querydsl.entitly.QTeam.team;
 import static org.springframework.util.StringUtils.hasText;
 import static org.springframework.util.StringUtils.pathEquals;
 
+@Transactional(readOnly = true)
+@MeteredRepository
 public class MemberRepositoryImpl  implements MemberRepositoryCustom{
+    // 커서 페이지 하나의 최대 크기
+    public static final int MAX_CURSOR_PAGE_SIZE = 100;
     // QuerydslRepositorySupport를 상속받으면 아래와 같이 하면 된다. extends QuerydslRepositorySupport
     // entityManager를 직접 갖고 있음. Querydsl이라는 것도 갖고 있음
     // querydsl 3.x 대상으로 만들어짐
@@ -37,9 +52,21 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom{
 //        super(Member.class);
 //    }
     private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final MemberSearchPredicates predicates;
+    private final ParallelCountExecutor parallelCountExecutor;
+    private final RepositoryMetrics metrics;
+    private final MemberCountEstimator countEstimator;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache, MemberSearchPredicates predicates,
+                                ParallelCountExecutor parallelCountExecutor, RepositoryMetrics metrics,
+                                MemberCountEstimator countEstimator) {
         this.queryFactory = new JPAQueryFactory(em);
+        this.countCache = countCache;
+        this.predicates = predicates;
+        this.parallelCountExecutor = parallelCountExecutor;
+        this.metrics = metrics;
+        this.countEstimator = countEstimator;
     }
 
 
@@ -98,6 +125,8 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom{
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
+                // 허용된 키로만 정렬하고 마지막에 member.id를 붙인다. (fetchResults의 count 쿼리에는 order by가 빠진다)
+                .orderBy(MemberSorts.SEARCH.translate(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -127,8 +156,33 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom{
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        // 없는 팀명이면 content도 count도 비어 있다.
+        if (predicates.matchesNothing(condition)) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
         // 이건 content만 가져오는 것
-        List<MemberTeamDto> content = queryFactory
+        JPAQuery<MemberTeamDto> contentQuery = contentQuery(condition, pageable);
+        // count 조건은 여기서 미리 만든다. count 스레드에서 TeamDirectory를 읽으면 커넥션을 하나 더 잡는다.
+        Predicate countWhere = predicates.withoutTeamJoin(condition);
+        // 켜져 있으면 count 쿼리를 다른 커넥션으로 content 쿼리와 동시에 실행한다.
+        if (parallelCountExecutor.isEnabled()) {
+            return parallelCountExecutor.getPage(pageable, contentQuery::fetch,
+                    em -> countCache.get(condition, metrics.count("MemberRepositoryImpl.searchPageComplex", condition,
+                            () -> countQuery(new JPAQueryFactory(em), countWhere).fetchCount())));
+        }
+        List<MemberTeamDto> content = contentQuery.fetch();
+        JPAQuery<Member> countQuery = countQuery(queryFactory, countWhere);
+        // getPage에서 countQuery를 호출하지 않아도 될 때 호출 안함 알아서
+//        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
+//        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        // 같은 조건의 count는 캐시에서 꺼낸다. Member, Team이 바뀌면 캐시가 비워진다.
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.get(condition, metrics.count("MemberRepositoryImpl.searchPageComplex", condition, countQuery::fetchCount)));
+//        return new PageImpl<>(content, pageable, total);
+    }
+
+    private JPAQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition, Pageable pageable) {
+        return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -144,24 +198,92 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom{
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
+                .orderBy(MemberSorts.SEARCH.translate(pageable.getSort()))
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
-        // 직접 total count 쿼리를 날림. count 쿼리 최적화
-        JPAQuery<Member> countQuery =  queryFactory
+                .limit(pageable.getPageSize());
+    }
+
+    // total을 세지 않고 추정한다. 결과가 마지막 페이지라서 total을 바로 알 수 있으면 추정하지 않는다.
+    @Override
+    public Page<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> content = contentQuery(condition, pageable).fetch();
+        // PageableExecutionUtils.getPage와 같은 기준
+        if (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty())) {
+            return new EstimatedPage<>(content, pageable, pageable.getOffset() + content.size(), false);
+        }
+        MemberCountEstimator.Estimate estimate = countEstimator.estimate(condition);
+        // 추정치가 이미 읽은 row보다 작으면 PageImpl이 offset + content 크기로 올려준다.
+        return new EstimatedPage<>(content, pageable, estimate.getCount(), estimate.isEstimated());
+    }
+
+    // 직접 total count 쿼리를 날림. count 쿼리 최적화
+    // 팀명은 메모리에서 팀 id로 바꿔서 FK로 거르기 때문에 team join이 필요 없다.
+    private JPAQuery<Member> countQuery(JPAQueryFactory factory, Predicate countWhere) {
+        return factory
                 .select(member)
                 .from(member)
+                .where(countWhere);
+    }
+
+    // offset은 건너뛰는 row를 전부 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+    // 마지막으로 읽은 member.id 다음부터 찾으면(seek) pk 인덱스를 타서 몇 번째 페이지든 비용이 같다.
+    @Override
+    public MemberCursorPage searchByCursor(MemberSearchCondition condition, String cursor, int size) {
+        // 0 이하면 limit이 깨지고, 너무 크면 커서를 쓰는 의미가 없다. (size + 1 overflow도 막는다)
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new InvalidSearchRequestException("size must be between 1 and " + MAX_CURSOR_PAGE_SIZE + ": " + size);
+        }
+        Long lastMemberId = decodeCursor(cursor);
+        // 다음 페이지가 있는지 알기 위해 한 건 더 가져온다.
+        List<MemberTeamDto> rows = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
                 .leftJoin(member.team, team)
                 .where(
+                        memberIdGt(lastMemberId),
                         usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                );
-        // getPage에서 countQuery를 호출하지 않아도 될 때 호출 안함 알아서
-//        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
-//        return new PageImpl<>(content, pageable, total);
+                )
+                .orderBy(member.id.asc())
+                .limit(size + 1)
+                .fetch();
+        boolean hasNext = rows.size() > size;
+        List<MemberTeamDto> content = hasNext ? new ArrayList<>(rows.subList(0, size)) : rows;
+        String nextCursor = hasNext ? encodeCursor(content.get(content.size() - 1).getMemberId()) : null;
+        return new MemberCursorPage(content, nextCursor, hasNext);
+    }
+
+    private String encodeCursor(Long memberId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("id:" + memberId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Long decodeCursor(String cursor) {
+        if (!hasText(cursor)) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith("id:")) {
+                throw new InvalidSearchRequestException("Invalid cursor: " + cursor);
+            }
+            return Long.valueOf(decoded.substring("id:".length()));
+        } catch (IllegalArgumentException e) {
+            // Base64, 숫자 파싱 오류(NumberFormatException 포함)를 하나로 묶는다.
+            throw new InvalidSearchRequestException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    private BooleanExpression memberIdGt(Long memberId) {
+        return memberId != null ? member.id.gt(memberId) : null;
     }
 
     private BooleanExpression usernameEq(String username) {
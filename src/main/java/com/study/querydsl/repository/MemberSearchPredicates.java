@@ -0,0 +1,51 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.study.querydsl.dto.MemberSearchCondition;
+import org.springframework.stereotype.Component;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * team join 없이 member만으로 거는 검색 조건. 팀명은 {@link TeamDirectory}로 팀 id를 찾아 FK(member.team.id)로 건다.
+ * count 쿼리(searchPageComplex, applyPagination2), searchMember, {@link MemberCountEstimator}가 같이 쓴다.
+ * <p>
+ * 조건의 의미는 각 레포지토리의 usernameEq / teamNameEq / ageGoe / ageLoe와 같다.
+ */
+@Component
+public class MemberSearchPredicates {
+    private final TeamDirectory teamDirectory;
+
+    public MemberSearchPredicates(TeamDirectory teamDirectory) {
+        this.teamDirectory = teamDirectory;
+    }
+
+    // 없는 팀명이면 어떤 회원도 맞지 않는다. 이때는 조회하지 않고 빈 결과를 돌려준다.
+    public boolean matchesNothing(MemberSearchCondition condition) {
+        return teamDirectory.matchesNoTeam(condition.getTeamName());
+    }
+
+    // 조건이 하나도 없으면 null
+    public Predicate withoutTeamJoin(MemberSearchCondition condition) {
+        return ExpressionUtils.allOf(
+                usernameEq(condition.getUsername()),
+                teamDirectory.teamIdIn(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe()));
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
@@ -0,0 +1,129 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.repository.support.MeteredRepository;
+import com.study.querydsl.repository.support.RepositoryMetrics;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.study.querydsl.repository.MemberSearchShape.*;
+
+// search, searchPage*와 같은 결과를 내지만 JPQL을 매번 만들지 않는다.
+// querydsl은 요청마다 JPAQuery를 만들고 JPQL 문자열로 직렬화하는데,
+// 검색 조건의 모양(MemberSearchShape)은 16가지뿐이라 모양별로 JPQL을 한 번만 만들어 두고 값만 바인딩한다.
+// JPQL 문자열이 항상 같으므로 hibernate 쿼리 플랜 캐시도 매번 적중한다.
+// 순서는 정렬이 없을 때의 querydsl 검색(MemberSorts.SEARCH)과 같은 member.id 순이다. (offset 페이지가 겹치거나 빠지지 않게)
+@Repository
+@Transactional(readOnly = true)
+@MeteredRepository
+public class MemberSearchQueries {
+    private static final String SELECT_MEMBER_TEAM_DTO =
+            "select new com.study.querydsl.dto.MemberTeamDto(m.id, m.username, m.age, t.id, t.name)" +
+            " from Member m left join m.team t";
+    private static final String ORDER_BY_ID = " order by m.id asc";
+    private static final String SELECT_COUNT = "select count(m) from Member m";
+
+    private final EntityManager em;
+    private final MemberCountCache countCache;
+    private final TeamDirectory teamDirectory;
+    private final RepositoryMetrics metrics;
+    private final Map<MemberSearchShape, String> contentQueries = new ConcurrentHashMap<>();
+    private final Map<MemberSearchShape, String> countQueries = new ConcurrentHashMap<>();
+
+    public MemberSearchQueries(EntityManager em, MemberCountCache countCache, TeamDirectory teamDirectory,
+                               RepositoryMetrics metrics) {
+        this.em = em;
+        this.countCache = countCache;
+        this.teamDirectory = teamDirectory;
+        this.metrics = metrics;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return contentQuery(condition).getResultList();
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        TypedQuery<MemberTeamDto> query = contentQuery(condition);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        List<MemberTeamDto> content = query.getResultList();
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.get(condition, metrics.count("MemberSearchQueries.searchPage", condition, () -> count(condition))));
+    }
+
+    public long count(MemberSearchCondition condition) {
+        MemberSearchShape shape = MemberSearchShape.of(condition);
+        List<Long> teamIds = null;
+        if (shape.has(TEAM_NAME)) {
+            teamIds = teamDirectory.findIds(condition.getTeamName());
+            if (teamIds.isEmpty()) {
+                return 0;
+            }
+        }
+        String jpql = countQueries.computeIfAbsent(shape, this::buildCountJpql);
+        Query query = em.createQuery(jpql);
+        bind(query, shape, condition);
+        if (teamIds != null) {
+            query.setParameter("teamIds", teamIds);
+        }
+        return (Long) query.getSingleResult();
+    }
+
+    private TypedQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition) {
+        MemberSearchShape shape = MemberSearchShape.of(condition);
+        String jpql = contentQueries.computeIfAbsent(shape, this::buildContentJpql);
+        TypedQuery<MemberTeamDto> query = em.createQuery(jpql, MemberTeamDto.class);
+        bind(query, shape, condition);
+        if (shape.has(TEAM_NAME)) {
+            query.setParameter("teamName", condition.getTeamName());
+        }
+        return query;
+    }
+
+    private String buildContentJpql(MemberSearchShape shape) {
+        return SELECT_MEMBER_TEAM_DTO + where(shape) + ORDER_BY_ID;
+    }
+
+    // team은 다대일 left join이라 row 수를 바꾸지 않는다.
+    // 팀명은 TeamDirectory로 팀 id를 찾아 FK로 거르기 때문에 count에는 join이 없다.
+    private String buildCountJpql(MemberSearchShape shape) {
+        return SELECT_COUNT + where(shape, "m.team.id in :teamIds");
+    }
+
+    private String where(MemberSearchShape shape) {
+        return where(shape, "t.name = :teamName");
+    }
+
+    private String where(MemberSearchShape shape, String teamPredicate) {
+        StringBuilder where = new StringBuilder();
+        if (shape.has(USERNAME)) and(where, "m.username = :username");
+        if (shape.has(TEAM_NAME)) and(where, teamPredicate);
+        if (shape.has(AGE_GOE)) and(where, "m.age >= :ageGoe");
+        if (shape.has(AGE_LOE)) and(where, "m.age <= :ageLoe");
+        return where.toString();
+    }
+
+    private void and(StringBuilder where, String predicate) {
+        where.append(where.length() == 0 ? " where " : " and ").append(predicate);
+    }
+
+    // 팀 조건은 content(팀명), count(팀 id)가 다르므로 각자 바인딩한다.
+    private void bind(Query query, MemberSearchShape shape, MemberSearchCondition condition) {
+        if (shape.has(USERNAME)) query.setParameter("username", condition.getUsername());
+        if (shape.has(AGE_GOE)) query.setParameter("ageGoe", condition.getAgeGoe());
+        if (shape.has(AGE_LOE)) query.setParameter("ageLoe", condition.getAgeLoe());
+    }
+}
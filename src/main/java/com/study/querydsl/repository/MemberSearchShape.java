@@ -0,0 +1,75 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.springframework.util.StringUtils.hasText;
+
+// 검색 조건 중 어떤 필드가 채워져 있는지. 필드가 4개라서 모양은 16가지뿐이다.
+// 같은 모양이면 where 절이 같고, 바인딩되는 값만 다르다.
+public final class MemberSearchShape {
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+
+    private static final MemberSearchShape[] SHAPES = new MemberSearchShape[16];
+
+    static {
+        for (int bits = 0; bits < SHAPES.length; bits++) {
+            SHAPES[bits] = new MemberSearchShape(bits);
+        }
+    }
+
+    private final int bits;
+
+    private MemberSearchShape(int bits) {
+        this.bits = bits;
+    }
+
+    // usernameEq, teamNameEq, ageGoe, ageLoe가 null을 돌려주는 기준과 같다.
+    public static MemberSearchShape of(MemberSearchCondition condition) {
+        int bits = 0;
+        if (hasText(condition.getUsername())) {
+            bits |= USERNAME;
+        }
+        if (hasText(condition.getTeamName())) {
+            bits |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            bits |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            bits |= AGE_LOE;
+        }
+        return SHAPES[bits];
+    }
+
+    public static List<MemberSearchShape> all() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(SHAPES)));
+    }
+
+    public boolean has(int field) {
+        return (bits & field) != 0;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    // 메트릭 태그 등에 쓰는 이름. ex) "teamName+ageGoe", 조건이 없으면 "none"
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner("+");
+        if (has(USERNAME)) joiner.add("username");
+        if (has(TEAM_NAME)) joiner.add("teamName");
+        if (has(AGE_GOE)) joiner.add("ageGoe");
+        if (has(AGE_LOE)) joiner.add("ageLoe");
+        return bits == 0 ? "none" : joiner.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.collections.CollQueryFactory;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.dto.QMemberTeamDto;
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.AfterCompletion;
+import com.study.querydsl.repository.support.CacheTtl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static com.study.querydsl.entitly.QTeam.team;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * member left join team 결과 전체를 메모리에 들고 querydsl-collections로 검색한다. (member.search.in-memory)
+ * 데이터가 작고 거의 읽기만 하는 경우 DB 왕복을 없앤다.
+ * <p>
+ * 조건은 JPA 쪽 usernameEq / teamNameEq / ageGoe / ageLoe와 같은 의미로 MemberTeamDto에 건다.
+ * 결과는 JPA 검색과 같은 행이고, 순서는 memberId 순이다. (JPA 검색은 순서를 정하지 않는다)
+ * <p>
+ * Member, Team이 바뀌면 스냅샷을 버리고 다음 검색 때 다시 읽는다. (이벤트를 받을 때, 트랜잭션이 끝날 때 두 번 버린다)
+ * 회원이 max-rows보다 많으면 스냅샷을 만들지 않고 JPA 검색(MemberRepository)으로 넘긴다.
+ * 이 상태는 쓰기가 있어도 in-memory-recheck 간격 동안 유지하고, 그 뒤에 count(*)로 먼저 세어 본 다음에만 다시 읽는다.
+ * (쓰기마다 max-rows + 1개를 읽고 버리지 않게)
+ * 스냅샷은 replica에서 읽었을 수 있으므로 cache-ttl이 지나면 다시 읽는다. ({@link CacheTtl})
+ */
+@Component
+public class MemberSnapshotQueries {
+    private static final PathBuilder<MemberTeamDto> row = new PathBuilder<>(MemberTeamDto.class, "row");
+
+    private final JPAQueryFactory queryFactory;
+    private final MemberRepository memberRepository;
+    private final int maxRows;
+    private final long recheckNanos;
+    private final CacheTtl ttl;
+    private final AtomicLong generation = new AtomicLong();
+    // 읽기 전용 목록. null이면 아직 안 읽었거나 무효화된 상태
+    private volatile List<MemberTeamDto> snapshot;
+    // snapshot을 읽은 시각 (System.nanoTime)
+    private volatile long loadedAt;
+    private volatile boolean tooLarge;
+    // tooLarge일 때 다시 읽어 볼 시각 (System.nanoTime)
+    private volatile long recheckAt;
+
+    public MemberSnapshotQueries(EntityManager em,
+                                 MemberRepository memberRepository,
+                                 @Value("${member.search.in-memory-max-rows:50000}") int maxRows,
+                                 @Value("${member.search.in-memory-recheck:1m}") Duration recheck,
+                                 CacheTtl ttl) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.memberRepository = memberRepository;
+        this.maxRows = maxRows;
+        this.recheckNanos = recheck.toNanos();
+        this.ttl = ttl;
+    }
+
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<MemberTeamDto> rows = current();
+        if (rows == null) {
+            return memberRepository.search(condition);
+        }
+        return fetch(rows, condition);
+    }
+
+    // searchPageSimple과 같은 결과 (정렬은 무시하고 memberId 순)
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> rows = current();
+        if (rows == null) {
+            return memberRepository.searchPageSimple(condition, pageable);
+        }
+        List<MemberTeamDto> result = fetch(rows, condition);
+        int from = (int) Math.min(pageable.getOffset(), result.size());
+        int to = Math.min(from + pageable.getPageSize(), result.size());
+        return new PageImpl<>(result.subList(from, to), pageable, result.size());
+    }
+
+    private List<MemberTeamDto> fetch(List<MemberTeamDto> rows, MemberSearchCondition condition) {
+        return CollQueryFactory.from(row, rows)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .fetch();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+            invalidate();
+            AfterCompletion.runOnce(this, this::invalidate);
+        }
+    }
+
+    // 너무 많다는 상태(tooLarge)는 recheckAt까지 그대로 둔다.
+    public synchronized void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    boolean isTooLarge() {
+        return tooLarge;
+    }
+
+    private List<MemberTeamDto> current() {
+        List<MemberTeamDto> current = snapshot;
+        if ((current != null && !ttl.isExpired(loadedAt)) || (tooLarge && System.nanoTime() - recheckAt < 0)) {
+            return current;
+        }
+        return load();
+    }
+
+    private List<MemberTeamDto> load() {
+        long startGeneration = generation.get();
+        long startedAt = System.nanoTime();
+        // 전에 너무 많았으면 스냅샷을 읽기 전에 count(*)로 먼저 확인한다.
+        if (tooLarge && countMembers() > maxRows) {
+            markTooLarge();
+            return null;
+        }
+        List<MemberTeamDto> rows = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .orderBy(member.id.asc())
+                .limit(maxRows + 1L)
+                .fetch();
+        if (rows.size() > maxRows) {
+            markTooLarge();
+            return null;
+        }
+        List<MemberTeamDto> loaded = Collections.unmodifiableList(rows);
+        synchronized (this) {
+            if (!isUncommittedView() && generation.get() == startGeneration) {
+                snapshot = loaded;
+                loadedAt = startedAt;
+                tooLarge = false;
+            }
+        }
+        return loaded;
+    }
+
+    private long countMembers() {
+        Long count = queryFactory
+                .select(member.count())
+                .from(member)
+                .fetchOne();
+        return count == null ? 0 : count;
+    }
+
+    // 읽는 도중 다른 쓰기가 있었더라도 max-rows를 넘었다는 판단은 그대로 쓴다. (쓰기가 계속되면 스냅샷을 못 만들므로)
+    private synchronized void markTooLarge() {
+        if (isUncommittedView()) {
+            return;
+        }
+        snapshot = null;
+        tooLarge = true;
+        recheckAt = System.nanoTime() + recheckNanos;
+    }
+
+    // 쓰기 트랜잭션 안에서 읽은 내용은 커밋 전일 수 있으므로 이번 호출에만 쓴다. (TeamDirectory와 같은 기준)
+    private static boolean isUncommittedView() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? row.getString("username").eq(username) : null;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? row.getString("teamName").eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? row.getNumber("age", Integer.class).goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? row.getNumber("age", Integer.class).loe(ageLoe) : null;
+    }
+}
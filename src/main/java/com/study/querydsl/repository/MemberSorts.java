@@ -0,0 +1,22 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.repository.support.SortTranslator;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static com.study.querydsl.entitly.QTeam.team;
+
+// 회원 검색(member left join team)에서 허용하는 정렬 키
+// 인덱스가 있는 컬럼만 연다. (Member, Team의 @Table indexes, pk)
+// 예) ?sort=teamName,asc&sort=age,desc -> order by team.name asc, member.age desc, member.id asc
+public final class MemberSorts {
+    public static final SortTranslator SEARCH = SortTranslator.builder(member.id)
+            .path("memberId", member.id)
+            .path("id", member.id)
+            .path("username", member.username)
+            .path("age", member.age)
+            .path("teamName", team.name)
+            .build();
+
+    private MemberSorts() {
+    }
+}
@@ -1,49 +1,72 @@
 package com.study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.JPQLQueryFactory;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.study.querydsl.dto.MemberSearchCondition;
 import com.study.querydsl.entitly.Member;
 import com.study.querydsl.entitly.QMember;
 import com.study.querydsl.entitly.QTeam;
+import com.study.querydsl.repository.support.MeteredRepository;
 import com.study.querydsl.repository.support.Querydsl4RepositorySupport;
+import com.study.querydsl.repository.support.SortTranslator;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 import static com.study.querydsl.entitly.QMember.member;
 import static com.study.querydsl.entitly.QTeam.team;
 import static org.springframework.util.StringUtils.hasText;
 
 @Repository
+@Transactional(readOnly = true)
+@MeteredRepository
 public class MemberTestRepository extends Querydsl4RepositorySupport {
-    public MemberTestRepository(){
+    private final MemberSearchPredicates predicates;
+
+    public MemberTestRepository(MemberSearchPredicates predicates){
         super(Member.class);
+        this.predicates = predicates;
+    }
+
+    // 모든 조회가 member left join team 이라 teamName으로도 정렬할 수 있다.
+    @Override
+    protected SortTranslator getSortTranslator() {
+        return MemberSorts.SEARCH;
     }
 
+    // 엔티티 조회는 member.search.entity-read-mode(기본 managed)로 읽는다.
     public List<Member> basicSelect(){
-        return select(member)
-                .from(member)
-                .fetch();
+        return fetchEntities(query -> query
+                .select(member)
+                .from(member));
     }
     public List<Member> basicSelectFrom(){
-        return selectFrom(member)
-                .fetch();
+        return fetchEntities(query -> query
+                .selectFrom(member));
     }
 
     public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable) {
-        JPAQuery<Member> query = selectFrom(member)
+        Function<JPQLQueryFactory, JPQLQuery<Member>> query = factory -> factory.selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 );
-        List<Member> content = getQuerydsl().applyPagination(pageable, query).fetch();
-        return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
+        LongSupplier countQuery = countQueryOf((JPAQuery<?>) query.apply(getQueryFactory()));
+        List<Member> content = fetchEntities(factory -> applyPaging(pageable, query.apply(factory)));
+        return PageableExecutionUtils.getPage(content, pageable, countQuery);
     }
     public Page<Member> applyPagination(MemberSearchCondition condition, Pageable pageable) {
         return applyPagination(pageable, query ->
@@ -57,6 +80,12 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         );
     }
     public Page<Member> applyPagination2(MemberSearchCondition condition, Pageable pageable) {
+        // 없는 팀명이면 조회하지 않는다. (count 쿼리는 팀 id로 거른다)
+        if (predicates.matchesNothing(condition)) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        // count 조건은 여기서 미리 만든다. count 스레드에서 TeamDirectory를 읽으면 커넥션을 하나 더 잡는다. (ParallelCountExecutor)
+        Predicate countWhere = predicates.withoutTeamJoin(condition);
         return applyPagination(pageable, contentQuery ->
                 contentQuery.selectFrom(member)
                         .leftJoin(member.team, team)
@@ -67,12 +96,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                         ),countQuery->countQuery
                                         .select(member.id)
                                         .from(member)
-                                        .leftJoin(member.team, team)
-                                        .where(usernameEq(condition.getUsername()),
-                                                teamNameEq(condition.getTeamName()),
-                                                ageGoe(condition.getAgeGoe()),
-                                                ageLoe(condition.getAgeLoe())
-                                        )
+                                        .where(countWhere)
         );
     }
     private BooleanExpression usernameEq(String username) {
@@ -83,6 +107,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         return hasText(teamName) ? team.name.eq(teamName) : null;
     }
 
+
     private BooleanExpression ageGoe(Integer ageGoe) {
         return ageGoe != null ? member.age.goe(ageGoe) : null;
     }
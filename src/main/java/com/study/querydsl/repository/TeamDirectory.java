@@ -0,0 +1,109 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.AfterCompletion;
+import com.study.querydsl.repository.support.CacheTtl;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static com.study.querydsl.entitly.QTeam.team;
+import static org.springframework.util.StringUtils.hasText;
+
+// 팀명 -> 팀 id 목록
+// 팀은 몇 개 안 되고 잘 바뀌지 않으므로 메모리에 들고 있다가 Team이 바뀌면(이벤트 때, 그 트랜잭션이 끝날 때) 다시 읽는다.
+// 팀명 조건을 team.name 대신 member.team.id(FK)로 걸 수 있어서 team join이 필요 없어진다.
+// 팀명이 유일하다는 보장이 없으므로 id 목록으로 돌려준다.
+// replica에서 읽었을 수 있으므로 cache-ttl이 지나면 다시 읽는다. (CacheTtl)
+@Component
+public class TeamDirectory {
+    private final JPAQueryFactory queryFactory;
+    private final AtomicLong generation = new AtomicLong();
+    private final CacheTtl ttl;
+    private volatile Map<String, List<Long>> idsByName;
+    // idsByName을 읽은 시각 (System.nanoTime)
+    private volatile long loadedAt;
+
+    public TeamDirectory(EntityManager em, CacheTtl ttl) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.ttl = ttl;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findIds(String teamName) {
+        Map<String, List<Long>> directory = idsByName;
+        if (directory == null || ttl.isExpired(loadedAt)) {
+            directory = load();
+        }
+        return directory.getOrDefault(teamName, Collections.emptyList());
+    }
+
+    /**
+     * 팀명 조건을 team join 없이 member.team.id in (...)으로 건다. 팀명이 없으면 null
+     * 그런 팀이 없으면 결과도 없으므로 호출하는 쪽에서 {@link #matchesNoTeam}으로 먼저 확인하고 조회하지 않는다.
+     */
+    public BooleanExpression teamIdIn(String teamName) {
+        if (!hasText(teamName)) {
+            return null;
+        }
+        return member.team.id.in(findIds(teamName));
+    }
+
+    // 팀명 조건이 있는데 그런 팀이 없으면 true. 이때는 조회할 필요 없이 결과가 비어 있다.
+    public boolean matchesNoTeam(String teamName) {
+        return hasText(teamName) && findIds(teamName).isEmpty();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAbout(Team.class)) {
+            invalidate();
+            // 이벤트는 flush 때 오므로 커밋 전에 다른 읽기가 옛 팀 목록을 다시 채울 수 있다. 끝날 때 한 번 더 비운다.
+            AfterCompletion.runOnce(this, this::invalidate);
+        }
+    }
+
+    public synchronized void invalidate() {
+        generation.incrementAndGet();
+        idsByName = null;
+    }
+
+    private Map<String, List<Long>> load() {
+        long startGeneration = generation.get();
+        long startedAt = System.nanoTime();
+        List<Tuple> rows = queryFactory
+                .select(team.name, team.id)
+                .from(team)
+                .fetch();
+        Map<String, List<Long>> directory = new HashMap<>();
+        for (Tuple row : rows) {
+            directory.computeIfAbsent(row.get(team.name), name -> new ArrayList<>()).add(row.get(team.id));
+        }
+        directory.replaceAll((name, ids) -> Collections.unmodifiableList(ids));
+        directory = Collections.unmodifiableMap(directory);
+        // 쓰기 트랜잭션 안에서 읽은 내용은 커밋 전일 수 있으므로 이번 호출에만 쓴다. (MemberCountCache와 같은 기준)
+        boolean uncommittedView = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        synchronized (this) {
+            if (!uncommittedView && generation.get() == startGeneration) {
+                idsByName = directory;
+                loadedAt = startedAt;
+            }
+        }
+        return directory;
+    }
+}
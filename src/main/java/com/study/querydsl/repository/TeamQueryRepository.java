@@ -0,0 +1,64 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.dto.MemberDto;
+import com.study.querydsl.dto.TeamMembersDto;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static com.study.querydsl.entitly.QTeam.team;
+import static org.springframework.util.StringUtils.hasText;
+
+@Repository
+@Transactional(readOnly = true)
+public class TeamQueryRepository {
+    private final JPAQueryFactory queryFactory;
+
+    public TeamQueryRepository(EntityManager em) {
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    /**
+     * 팀과 소속 회원을 쿼리 두 번으로 가져온다. (팀 조회 1번 + 회원 조회 1번)
+     * 컬렉션 페치 조인은 팀 row가 회원 수만큼 늘어나고 페이징도 할 수 없어서,
+     * 팀을 먼저 가져온 뒤 member.team.id in (...) 으로 회원을 한 번에 가져와서 메모리에서 묶는다.
+     */
+    public List<TeamMembersDto> findTeamsWithMembers(String teamName) {
+        Map<Long, TeamMembersDto> teams = new LinkedHashMap<>();
+        List<Tuple> teamRows = queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .where(hasText(teamName) ? team.name.eq(teamName) : null)
+                .orderBy(team.id.asc())
+                .fetch();
+        for (Tuple row : teamRows) {
+            Long teamId = row.get(team.id);
+            teams.put(teamId, new TeamMembersDto(teamId, row.get(team.name)));
+        }
+        if (teams.isEmpty()) {
+            return new ArrayList<>(teams.values());
+        }
+
+        // team_id 컬럼만 보므로 team 조인이 필요 없다.
+        List<Tuple> memberRows = queryFactory
+                .select(member.team.id, member.username, member.age)
+                .from(member)
+                .where(member.team.id.in(teams.keySet()))
+                .orderBy(member.id.asc())
+                .fetch();
+        for (Tuple row : memberRows) {
+            teams.get(row.get(member.team.id))
+                    .getMembers()
+                    .add(new MemberDto(row.get(member.username), row.get(member.age)));
+        }
+        return new ArrayList<>(teams.values());
+    }
+}
@@ -0,0 +1,296 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.dto.TeamStatsDto;
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.AfterCompletion;
+import com.study.querydsl.repository.support.CacheTtl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static com.study.querydsl.entitly.QTeam.team;
+
+/**
+ * 팀별 count / sum / avg / min / max(member.age)를 메모리에 들고 변경분만 반영한다. (/teams/stats)
+ * select team.name, count(..), sum(..) ... group by team.name 을 매번 돌리지 않고 팀 수만큼만 읽는다.
+ * <p>
+ * 처음 쓸 때 전체(회원 id, 팀 id, 나이)를 한 번 읽고, 이후에는 엔티티 이벤트로 모은 변경을 커밋된 뒤에 반영한다.
+ * 회원이 어느 팀에 몇 살로 들어가 있는지 기억해 두었다가(members), 바뀌면 이전 값을 빼고 새 값을 더한다.
+ * min/max는 빼기가 안 되므로 팀마다 나이 -> 인원 수(ages)를 들고 있는다.
+ * 벌크 이벤트에는 바뀐 값이 없으므로 해당 id만 DB에서 다시 읽는다.
+ * <p>
+ * 같은 변경을 두 번 반영해도 결과가 같으므로, 읽는 도중 커밋된 변경의 이벤트가 읽은 뒤에 와도 괜찮다.
+ * replica에서 읽었을 수 있으므로 cache-ttl이 지나면 다시 읽는다. ({@link CacheTtl})
+ */
+@Component
+public class TeamStatistics {
+    private final JPAQueryFactory queryFactory;
+    private final CacheTtl ttl;
+    private final int maxPendingChanges;
+    // 트랜잭션별로 모아 둔 변경을 묶어 두는 키 (TransactionSynchronizationManager 리소스)
+    private final Object pendingKey = new Object();
+    // null이면 아직 안 읽었거나 무효화된 상태. this로 보호한다.
+    private Stats stats;
+    // stats를 읽은 시각 (System.nanoTime)
+    private long loadedAt;
+
+    public TeamStatistics(EntityManager em, CacheTtl ttl,
+                          @Value("${member.team-stats.max-pending-changes:10000}") int maxPendingChanges) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.ttl = ttl;
+        this.maxPendingChanges = maxPendingChanges;
+    }
+
+    @Transactional(readOnly = true)
+    public synchronized List<TeamStatsDto> getStats() {
+        Stats current = stats;
+        if (current == null || ttl.isExpired(loadedAt)) {
+            long startedAt = System.nanoTime();
+            current = load();
+            // 쓰기 트랜잭션 안에서 읽은 내용은 커밋 전일 수 있으므로 이번 호출에만 쓴다. (TeamDirectory와 같은 기준)
+            boolean uncommittedView = TransactionSynchronizationManager.isActualTransactionActive()
+                    && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+            if (!uncommittedView) {
+                stats = current;
+                loadedAt = startedAt;
+            }
+        }
+        return current.toDtos();
+    }
+
+    /**
+     * 이벤트는 flush 때(커밋 전) 오므로 트랜잭션마다 바뀐 값만 모아 두었다가 커밋된 뒤에 한 번에 반영하고, 롤백되면 버린다.
+     * 엔티티는 들고 있지 않으므로 시딩처럼 큰 트랜잭션의 flush/clear를 막지 않는다.
+     * <ul>
+     *     <li>아직 안 읽었으면 모으지 않는다. 트랜잭션 도중에 다른 스레드가 읽었을 수 있으므로 끝날 때 한 번 버린다.</li>
+     *     <li>max-pending-changes보다 많이 바뀌면 모으기를 그만두고 커밋된 뒤에 버린다. (다음 조회 때 다시 읽는다)</li>
+     * </ul>
+     */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isBulk() || !(event.isAbout(Member.class) || event.isAbout(Team.class))) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Pending single = new Pending();
+            single.add(event, maxPendingChanges);
+            apply(single);
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            synchronized (this) {
+                if (stats == null) {
+                    AfterCompletion.runOnce(this, this::invalidate);
+                    return;
+                }
+            }
+            pending = bindPending();
+        }
+        pending.add(event, maxPendingChanges);
+    }
+
+    // 벌크 구간은 이미 커밋된 뒤에 발행되므로 바로 반영한다.
+    // 바깥 트랜잭션 안에서 불렸으면 그 트랜잭션의 커밋 전 내용까지 읽히므로 다시 읽지 않고 버린다.
+    @EventListener
+    public synchronized void onBulkChanged(EntityChangedEvent event) {
+        if (stats == null || !event.isBulk()) {
+            return;
+        }
+        if (event.isAbout(Member.class) && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            reloadMembers(event.getIds());
+        } else {
+            invalidate();
+        }
+    }
+
+    public synchronized void invalidate() {
+        stats = null;
+    }
+
+    // 트랜잭션마다 한 번 모을 곳을 만들고, 커밋되면 반영한다.
+    private Pending bindPending() {
+        Pending pending = new Pending();
+        TransactionSynchronizationManager.bindResource(pendingKey, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                if (status == STATUS_COMMITTED) {
+                    apply(pending);
+                }
+            }
+        });
+        return pending;
+    }
+
+    private synchronized void apply(Pending pending) {
+        if (stats == null) {
+            return;
+        }
+        if (pending.overflowed) {
+            invalidate();
+            return;
+        }
+        pending.teamNames.forEach((teamId, name) -> stats.team(teamId).name = name);
+        pending.members.forEach((memberId, changed) -> {
+            if (changed == null) {
+                stats.removeMember(memberId);
+            } else {
+                stats.putMember(memberId, changed.teamId, changed.age);
+            }
+        });
+        pending.removedTeams.forEach(stats.teams::remove);
+    }
+
+    private Stats load() {
+        Stats loaded = new Stats();
+        for (Tuple row : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            loaded.team(row.get(team.id)).name = row.get(team.name);
+        }
+        for (Tuple row : queryFactory.select(member.id, member.team.id, member.age).from(member).fetch()) {
+            loaded.putMember(row.get(member.id), row.get(member.team.id), row.get(member.age));
+        }
+        return loaded;
+    }
+
+    private void reloadMembers(List<Long> ids) {
+        Set<Long> missing = new HashSet<>(ids);
+        List<Tuple> rows = queryFactory
+                .select(member.id, member.team.id, member.age)
+                .from(member)
+                .where(member.id.in(ids))
+                .fetch();
+        for (Tuple row : rows) {
+            missing.remove(row.get(member.id));
+            stats.putMember(row.get(member.id), row.get(member.team.id), row.get(member.age));
+        }
+        // 다시 읽었는데 없으면 삭제된 것
+        missing.forEach(stats::removeMember);
+    }
+
+    // 한 트랜잭션에서 바뀐 회원/팀의 값
+    private static class Pending {
+        // 회원 id -> 바뀐 팀 id, 나이. 삭제면 null
+        private Map<Long, MemberAge> members = new LinkedHashMap<>();
+        // 팀 id -> 바뀐 이름
+        private Map<Long, String> teamNames = new LinkedHashMap<>();
+        private Set<Long> removedTeams = new LinkedHashSet<>();
+        private boolean overflowed;
+
+        void add(EntityChangedEvent event, int maxChanges) {
+            if (overflowed) {
+                return;
+            }
+            boolean removed = event.getChangeType() == EntityChangedEvent.ChangeType.REMOVE;
+            if (event.isAbout(Member.class)) {
+                Member changed = (Member) event.getEntity();
+                members.put(changed.getId(), removed ? null
+                        : new MemberAge(changed.getTeam() == null ? null : changed.getTeam().getId(), changed.getAge()));
+            } else {
+                Team changed = (Team) event.getEntity();
+                if (removed) {
+                    teamNames.remove(changed.getId());
+                    removedTeams.add(changed.getId());
+                } else {
+                    removedTeams.remove(changed.getId());
+                    teamNames.put(changed.getId(), changed.getName());
+                }
+            }
+            if (members.size() + teamNames.size() + removedTeams.size() > maxChanges) {
+                overflowed = true;
+                members = Collections.emptyMap();
+                teamNames = Collections.emptyMap();
+                removedTeams = Collections.emptySet();
+            }
+        }
+    }
+
+    private static class Stats {
+        // 팀 id 순
+        private final Map<Long, TeamAges> teams = new TreeMap<>();
+        private final Map<Long, MemberAge> members = new HashMap<>();
+
+        TeamAges team(Long teamId) {
+            return teams.computeIfAbsent(teamId, id -> new TeamAges());
+        }
+
+        void putMember(Long memberId, Long teamId, int age) {
+            removeMember(memberId);
+            members.put(memberId, new MemberAge(teamId, age));
+            if (teamId != null) {
+                team(teamId).add(age);
+            }
+        }
+
+        void removeMember(Long memberId) {
+            MemberAge old = members.remove(memberId);
+            if (old != null && old.teamId != null && teams.containsKey(old.teamId)) {
+                teams.get(old.teamId).remove(old.age);
+            }
+        }
+
+        List<TeamStatsDto> toDtos() {
+            List<TeamStatsDto> result = new ArrayList<>(teams.size());
+            teams.forEach((id, ages) -> result.add(ages.toDto(id)));
+            return result;
+        }
+    }
+
+    private static class TeamAges {
+        private String name;
+        private long count;
+        private long sum;
+        // 나이 -> 인원 수 (min, max 용)
+        private final TreeMap<Integer, Integer> ages = new TreeMap<>();
+
+        void add(int age) {
+            count++;
+            sum += age;
+            ages.merge(age, 1, Integer::sum);
+        }
+
+        void remove(int age) {
+            count--;
+            sum -= age;
+            ages.computeIfPresent(age, (key, n) -> n == 1 ? null : n - 1);
+        }
+
+        TeamStatsDto toDto(Long teamId) {
+            if (count == 0) {
+                return new TeamStatsDto(teamId, name, 0, 0, null, null, null);
+            }
+            return new TeamStatsDto(teamId, name, count, sum, (double) sum / count, ages.firstKey(), ages.lastKey());
+        }
+    }
+
+    private static class MemberAge {
+        private final Long teamId;
+        private final int age;
+
+        MemberAge(Long teamId, int age) {
+            this.teamId = teamId;
+            this.age = age;
+        }
+    }
+}
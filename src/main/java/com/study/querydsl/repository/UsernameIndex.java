@@ -0,0 +1,343 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.repository.support.AfterCompletion;
+import com.study.querydsl.repository.support.CacheTtl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.study.querydsl.entitly.QMember.member;
+
+/**
+ * 회원명 -> 회원 id 메모리 인덱스 (자동완성용, member.username-index.enabled)
+ * <ul>
+ *     <li>앞부분 일치 - 정렬된 맵(ConcurrentSkipListMap)의 구간 조회</li>
+ *     <li>부분 일치 - 3글자씩 자른 조각(trigram) -> id 목록. 3글자보다 짧으면 전체를 훑는다.</li>
+ * </ul>
+ * DB의 like '%..%'는 인덱스를 못 타므로 여기서 후보 id를 먼저 찾고, DB에는 member.id in (...)으로 묻는다.
+ * 대소문자는 구분하지 않는다.
+ * <p>
+ * 처음 쓸 때 전체를 읽고, 이후에는 Member 이벤트로 고친다. 변경은 커밋된 뒤에 반영하고, 벌크 이벤트가 있으면 버리고 다시 읽는다.
+ * 한 트랜잭션에서 max-pending-changes보다 많이 바뀌면(시딩, 대량 등록) 모으지 않고 커밋된 뒤에 버린다.
+ * 인덱스가 조금 틀려도 DB 조회에서 회원명 조건을 다시 걸기 때문에 결과가 틀리지는 않는다. (후보가 빠지는 경우만 문제)
+ * replica에서 읽었을 수 있으므로 cache-ttl이 지나면 다시 읽는다. ({@link CacheTtl})
+ */
+@Component
+public class UsernameIndex {
+    private static final int GRAM = 3;
+
+    private final JPAQueryFactory queryFactory;
+    private final boolean enabled;
+    private final int maxCandidates;
+    private final int maxPendingChanges;
+    private final AtomicLong generation = new AtomicLong();
+    // 트랜잭션별로 모아 둔 변경을 묶어 두는 키 (TransactionSynchronizationManager 리소스)
+    private final Object pendingKey = new Object();
+    private final CacheTtl ttl;
+    private volatile Index index;
+    // index를 읽은 시각 (System.nanoTime)
+    private volatile long loadedAt;
+
+    public UsernameIndex(EntityManager em,
+                         @Value("${member.username-index.enabled:false}") boolean enabled,
+                         @Value("${member.username-index.max-candidates:1000}") int maxCandidates,
+                         @Value("${member.username-index.max-pending-changes:1000}") int maxPendingChanges,
+                         CacheTtl ttl) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+        this.maxPendingChanges = maxPendingChanges;
+        this.ttl = ttl;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 회원명 순 후보 id. 후보가 max-candidates보다 많으면 null
+     * <p>
+     * 잘린 후보로 팀, 나이 같은 다른 조건을 같이 걸면 잘린 뒤쪽에만 있는 결과가 빠지므로,
+     * 자르지 않고 null을 돌려주어 DB의 like로 찾게 한다.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findIdsByPrefix(String prefix) {
+        return find(normalize(prefix), false);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findIdsContaining(String part) {
+        return find(normalize(part), true);
+    }
+
+    private List<Long> find(String text, boolean contains) {
+        Pending bound = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (bound != null && bound.overflowed) {
+            // 이 트랜잭션에서 너무 많이 바뀌어서 모아 두지 않았다. 인덱스로는 못 찾으므로 like로 찾게 한다.
+            return null;
+        }
+        Index current = current();
+        Map<Long, String> pending = bound != null ? bound.changes : Collections.emptyMap();
+        // 상한을 넘는지 알 수 있게 한 개 더 가져온다. 이 트랜잭션에서 바꾼 회원은 빼고 다시 넣으므로 그만큼 더 가져온다.
+        int limit = maxCandidates + 1 + pending.size();
+        List<Long> ids = contains ? current.containing(text, limit) : current.byPrefix(text, limit);
+        if (!pending.isEmpty()) {
+            ids = overlay(current, ids, pending, text, contains);
+        }
+        return ids.size() > maxCandidates ? null : ids;
+    }
+
+    // 아직 커밋 전인 이 트랜잭션의 변경을 인덱스 결과 위에 덮는다. (같은 트랜잭션에서는 바꾼 이름으로 찾을 수 있게)
+    private static List<Long> overlay(Index current, List<Long> ids, Map<Long, String> pending,
+                                      String text, boolean contains) {
+        List<Long> merged = new ArrayList<>();
+        for (Long id : ids) {
+            if (!pending.containsKey(id)) {
+                merged.add(id);
+            }
+        }
+        pending.forEach((id, name) -> {
+            if (name != null && (contains ? name.contains(text) : name.startsWith(text))) {
+                merged.add(id);
+            }
+        });
+        Comparator<Long> byName = Comparator.comparing(
+                (Long id) -> pending.containsKey(id) ? pending.get(id) : current.nameOf(id));
+        merged.sort(byName.thenComparing(id -> id));
+        return merged;
+    }
+
+    /**
+     * 이벤트는 flush 때(커밋 전) 오므로 바로 인덱스를 고치면 다른 트랜잭션이 커밋 전 이름으로 찾게 된다.
+     * 트랜잭션 안이면 변경을 모아 두었다가 커밋된 뒤에 반영하고, 롤백되면 버린다.
+     * 아직 인덱스를 안 읽었으면 모으지 않는다. 트랜잭션 도중에 다른 스레드가 읽었을 수 있으므로 끝날 때 한 번 버린다.
+     */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!enabled || !event.isAbout(Member.class)) {
+            return;
+        }
+        if (event.isBulk()) {
+            invalidate();
+            AfterCompletion.runOnce(this, this::invalidate);
+            return;
+        }
+        Member changed = (Member) event.getEntity();
+        String name = event.getChangeType() == EntityChangedEvent.ChangeType.REMOVE || changed.getUsername() == null
+                ? null : normalize(changed.getUsername());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(Collections.singletonMap(changed.getId(), name));
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            if (index == null) {
+                AfterCompletion.runOnce(this, this::invalidate);
+                return;
+            }
+            pending = bindPending();
+        }
+        pending.put(changed.getId(), name, maxPendingChanges);
+    }
+
+    public synchronized void invalidate() {
+        generation.incrementAndGet();
+        index = null;
+    }
+
+    // 회원 id -> 바뀐 이름(normalize), 삭제면 null
+    private synchronized void apply(Map<Long, String> changes) {
+        // 지금 읽고 있는 중인 인덱스에는 이 변경이 빠져 있을 수 있으므로 버리게 한다.
+        generation.incrementAndGet();
+        Index current = index;
+        if (current == null) {
+            return;
+        }
+        changes.forEach((id, name) -> {
+            if (name == null) {
+                current.remove(id);
+            } else {
+                current.put(id, name);
+            }
+        });
+    }
+
+    // 트랜잭션마다 한 번 모을 곳을 만들고, 커밋되면 반영한다. 너무 많이 바뀌었으면 버린다.
+    private Pending bindPending() {
+        Pending pending = new Pending();
+        TransactionSynchronizationManager.bindResource(pendingKey, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                if (status != STATUS_COMMITTED) {
+                    return;
+                }
+                if (pending.overflowed) {
+                    invalidate();
+                } else {
+                    apply(pending.changes);
+                }
+            }
+        });
+        return pending;
+    }
+
+    private Index current() {
+        Index current = index;
+        return current != null && !ttl.isExpired(loadedAt) ? current : load();
+    }
+
+    private Index load() {
+        long startGeneration = generation.get();
+        long startedAt = System.nanoTime();
+        List<Tuple> rows = queryFactory
+                .select(member.id, member.username)
+                .from(member)
+                .fetch();
+        Index loaded = new Index();
+        for (Tuple row : rows) {
+            loaded.put(row.get(member.id), row.get(member.username));
+        }
+        // 쓰기 트랜잭션 안에서 읽은 내용은 커밋 전일 수 있으므로 이번 호출에만 쓴다. (TeamDirectory와 같은 기준)
+        boolean uncommittedView = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        synchronized (this) {
+            if (!uncommittedView && generation.get() == startGeneration) {
+                index = loaded;
+                loadedAt = startedAt;
+            }
+        }
+        return loaded;
+    }
+
+    private static String normalize(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String name) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            grams.add(name.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    // 한 트랜잭션에서 아직 반영하지 않은 변경
+    private static class Pending {
+        // 회원 id -> 바뀐 이름(normalize), 삭제면 null
+        private Map<Long, String> changes = new LinkedHashMap<>();
+        private boolean overflowed;
+
+        void put(Long id, String name, int maxChanges) {
+            if (overflowed) {
+                return;
+            }
+            changes.put(id, name);
+            if (changes.size() > maxChanges) {
+                overflowed = true;
+                changes = Collections.emptyMap();
+            }
+        }
+    }
+
+    // 쓰기는 UsernameIndex의 락 안에서만 하고, 읽기는 락 없이 한다.
+    private static class Index {
+        private final ConcurrentSkipListMap<String, Set<Long>> idsByName = new ConcurrentSkipListMap<>();
+        private final Map<String, Set<Long>> idsByGram = new ConcurrentHashMap<>();
+        private final Map<Long, String> nameById = new ConcurrentHashMap<>();
+
+        void put(Long id, String username) {
+            remove(id);
+            if (username == null) {
+                return;
+            }
+            String name = normalize(username);
+            nameById.put(id, name);
+            idsByName.computeIfAbsent(name, key -> ConcurrentHashMap.newKeySet()).add(id);
+            for (String gram : grams(name)) {
+                idsByGram.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+
+        String nameOf(Long id) {
+            return nameById.getOrDefault(id, "");
+        }
+
+        void remove(Long id) {
+            String name = nameById.remove(id);
+            if (name == null) {
+                return;
+            }
+            removeId(idsByName, name, id);
+            for (String gram : grams(name)) {
+                removeId(idsByGram, gram, id);
+            }
+        }
+
+        private static void removeId(Map<String, Set<Long>> map, String key, Long id) {
+            map.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+
+        List<Long> byPrefix(String prefix, int limit) {
+            List<Long> result = new ArrayList<>();
+            for (Set<Long> ids : idsByName.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                for (Long id : ids) {
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+
+        List<Long> containing(String part, int limit) {
+            Set<Long> candidates = null;
+            // 조각 중 id가 가장 적은 것에서 시작한다.
+            for (String gram : grams(part)) {
+                Set<Long> ids = idsByGram.getOrDefault(gram, Collections.emptySet());
+                if (candidates == null || ids.size() < candidates.size()) {
+                    candidates = ids;
+                }
+            }
+            Iterable<Long> scan = candidates != null ? candidates : nameById.keySet();
+            List<Long> matched = new ArrayList<>();
+            for (Long id : scan) {
+                String name = nameById.get(id);
+                if (name != null && name.contains(part)) {
+                    matched.add(id);
+                }
+            }
+            return matched.stream()
+                    .sorted(Comparator.comparing((Long id) -> nameById.getOrDefault(id, "")).thenComparing(id -> id))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.study.querydsl.repository.support;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 엔티티 이벤트는 flush 때(커밋 전) 오기 때문에, 이벤트를 받고 바로 비운 캐시를
+ * 커밋 전에 다른 읽기 트랜잭션이 옛 데이터로 다시 채울 수 있다.
+ * 캐시는 이벤트를 받을 때 한 번, 트랜잭션이 끝날 때(커밋/롤백) 한 번 더 비운다. (DataVersion과 같은 방식)
+ */
+public final class AfterCompletion {
+    private AfterCompletion() {
+    }
+
+    /**
+     * 현재 트랜잭션이 끝날 때 action을 실행한다. owner마다 트랜잭션당 한 번만 등록한다.
+     * 트랜잭션 밖이면 아무 것도 하지 않는다.
+     */
+    public static void runOnce(Object owner, Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(owner)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(owner, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(owner);
+                action.run();
+            }
+        });
+    }
+}
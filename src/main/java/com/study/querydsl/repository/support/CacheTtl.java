@@ -0,0 +1,31 @@
+package com.study.querydsl.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 메모리 캐시(TeamDirectory, TeamStatistics, MemberSnapshotQueries, UsernameIndex)를 다시 읽는 주기 (datasource.routing.cache-ttl)
+ * <p>
+ * 캐시는 커밋 후에 비우고 다음 조회 때 읽기 전용 트랜잭션으로 다시 채우는데, replica를 쓰면 그 읽기가 replica로 간다.
+ * replica가 늦으면 옛 내용이 다음 쓰기까지 캐시에 남으므로 ttl이 지나면 다시 읽게 한다.
+ * 0이면 만료하지 않는다. (replica를 쓰지 않으면 캐시가 DB와 어긋날 일이 없다)
+ */
+@Component
+public class CacheTtl {
+    private final long ttlNanos;
+
+    public CacheTtl(@Value("${datasource.routing.cache-ttl:0s}") Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public static CacheTtl none() {
+        return new CacheTtl(Duration.ZERO);
+    }
+
+    // loadedAt(System.nanoTime)에 읽은 내용을 다시 읽어야 하면 true
+    public boolean isExpired(long loadedAt) {
+        return ttlNanos > 0 && System.nanoTime() - loadedAt - ttlNanos > 0;
+    }
+}
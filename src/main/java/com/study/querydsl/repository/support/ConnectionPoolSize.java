@@ -0,0 +1,28 @@
+package com.study.querydsl.repository.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * 실제 커넥션 풀 크기. spring.datasource.hikari.maximum-pool-size 대신 등록된 HikariDataSource에서 읽는다.
+ * datasource.routing으로 풀이 여러 개면(primary, replica) 가장 작은 풀을 기준으로 한다.
+ */
+@Component
+public class ConnectionPoolSize {
+    // HikariCP 기본값
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final int size;
+
+    public ConnectionPoolSize(ObjectProvider<HikariDataSource> pools) {
+        this.size = pools.orderedStream()
+                .mapToInt(HikariDataSource::getMaximumPoolSize)
+                .min()
+                .orElse(DEFAULT_POOL_SIZE);
+    }
+
+    public int get() {
+        return size;
+    }
+}
@@ -0,0 +1,128 @@
+package com.study.querydsl.repository.support;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * content 쿼리에서 count 쿼리를 만들어 준다.
+ * <p>
+ * content 쿼리를 그대로 fetchCount 하면 count에 필요 없는 join, fetch join, order by가 모두 따라간다.
+ * from 절과 where 절은 그대로 두고 아래만 정리한 {@code select count(*)} 쿼리를 만든다.
+ * <ul>
+ *     <li>where 절(다른 join 포함)에서 쓰지 않는 다대일/일대일 left join 제거 - row 수가 변하지 않는다.</li>
+ *     <li>fetch join 플래그, order by, offset/limit 제거</li>
+ * </ul>
+ * 컬렉션 join은 row 수를 바꾸므로 남긴다. group by, having, distinct가 있으면 content 쿼리로 센다.
+ */
+public final class CountQueryDeriver {
+
+    private CountQueryDeriver() {
+    }
+
+    public static LongSupplier derive(JPAQueryFactory queryFactory, JPAQuery<?> contentQuery) {
+        JPAQuery<Long> countQuery = deriveQuery(queryFactory, contentQuery);
+        return countQuery != null ? countQuery::fetchOne : contentQuery::fetchCount;
+    }
+
+    /**
+     * count 쿼리를 만들 수 없는 경우(group by, having, distinct)에는 null을 돌려준다.
+     */
+    public static JPAQuery<Long> deriveQuery(JPAQueryFactory queryFactory, JPAQuery<?> contentQuery) {
+        QueryMetadata metadata = contentQuery.getMetadata();
+        if (!metadata.getGroupBy().isEmpty() || metadata.getHaving() != null || metadata.isDistinct()) {
+            return null;
+        }
+        JPAQuery<Long> countQuery = queryFactory.select(Wildcard.count);
+        QueryMetadata countMetadata = countQuery.getMetadata();
+
+        // 뒤쪽 join이 앞쪽 alias를 쓸 수 있으므로 뒤에서부터 필요한 alias를 모은다.
+        List<JoinExpression> joins = metadata.getJoins();
+        Set<Path<?>> referenced = new HashSet<>();
+        collectRoots(metadata.getWhere(), referenced);
+        boolean[] keep = new boolean[joins.size()];
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (isPrunable(join, referenced)) {
+                continue;
+            }
+            keep[i] = true;
+            collectRoots(join.getTarget(), referenced);
+            collectRoots(join.getCondition(), referenced);
+        }
+        for (int i = 0; i < joins.size(); i++) {
+            if (keep[i]) {
+                JoinExpression join = joins.get(i);
+                countMetadata.addJoin(join.getType(), join.getTarget());
+                if (join.getCondition() != null) {
+                    countMetadata.addJoinCondition(join.getCondition());
+                }
+            }
+        }
+        if (metadata.getWhere() != null) {
+            countMetadata.addWhere(metadata.getWhere());
+        }
+        return countQuery;
+    }
+
+    // leftJoin(member.team, team) 처럼 단일 값 연관관계로 들어가는 left join이고 alias를 아무도 안 쓰면 뺄 수 있다.
+    private static boolean isPrunable(JoinExpression join, Set<Path<?>> referenced) {
+        if (join.getType() != JoinType.LEFTJOIN || !(join.getTarget() instanceof Operation)) {
+            return false;
+        }
+        Operation<?> target = (Operation<?>) join.getTarget();
+        if (target.getOperator() != Ops.ALIAS) {
+            return false;
+        }
+        Expression<?> association = target.getArg(0);
+        Expression<?> alias = target.getArg(1);
+        boolean singleValued = association instanceof Path
+                && !(association instanceof CollectionExpression)
+                && !(association instanceof MapExpression);
+        return singleValued && alias instanceof Path && !referenced.contains(((Path<?>) alias).getRoot());
+    }
+
+    private static void collectRoots(Object expr, Set<Path<?>> roots) {
+        if (expr instanceof Path) {
+            roots.add(((Path<?>) expr).getRoot());
+        } else if (expr instanceof Operation) {
+            for (Expression<?> arg : ((Operation<?>) expr).getArgs()) {
+                collectRoots(arg, roots);
+            }
+        } else if (expr instanceof TemplateExpression) {
+            for (Object arg : ((TemplateExpression<?>) expr).getArgs()) {
+                collectRoots(arg, roots);
+            }
+        } else if (expr instanceof FactoryExpression) {
+            for (Expression<?> arg : ((FactoryExpression<?>) expr).getArgs()) {
+                collectRoots(arg, roots);
+            }
+        } else if (expr instanceof SubQueryExpression) {
+            // 서브쿼리가 바깥 alias를 참조할 수 있다.
+            QueryMetadata subMetadata = ((SubQueryExpression<?>) expr).getMetadata();
+            collectRoots(subMetadata.getWhere(), roots);
+            collectRoots(subMetadata.getProjection(), roots);
+            for (JoinExpression join : subMetadata.getJoins()) {
+                collectRoots(join.getTarget(), roots);
+                collectRoots(join.getCondition(), roots);
+            }
+        }
+    }
+}
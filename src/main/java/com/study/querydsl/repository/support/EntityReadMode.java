@@ -0,0 +1,17 @@
+package com.study.querydsl.repository.support;
+
+/**
+ * 엔티티를 돌려주는 조회(searchMember, basicSelect, searchPageByApplyPage)를 어떻게 읽을지
+ * member.search.entity-read-mode 로 정한다.
+ */
+public enum EntityReadMode {
+    // 보통의 영속 엔티티. 변경 감지용 스냅샷을 같이 들고 있다.
+    MANAGED,
+    // org.hibernate.readOnly 힌트. 영속성 컨텍스트에는 올라가지만 스냅샷을 만들지 않는다.
+    // 쓰기 트랜잭션 밖에서만 flush mode MANUAL을 걸어 조회 전에 flush 하지 않는다.
+    // 쓰기 트랜잭션 안에서는 flush mode를 그대로 두므로 같은 트랜잭션에서 바꾼 내용도 조회에 보인다. (ReadOnlyQueries)
+    READ_ONLY,
+    // StatelessSession으로 읽는다. 영속성 컨텍스트가 없으므로 1차 캐시, 변경 감지, 지연 로딩이 모두 없다.
+    // 돌려받은 엔티티의 team 같은 지연 로딩 연관관계는 초기화할 수 없다.
+    STATELESS
+}
@@ -0,0 +1,17 @@
+package com.study.querydsl.repository.support;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 붙은 클래스의 public 메소드를 {@link RepositoryMetrics}가 잰다.
+ * 메소드마다 감쌀 필요 없이 클래스에 붙이기만 하면 된다.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MeteredRepository {
+}
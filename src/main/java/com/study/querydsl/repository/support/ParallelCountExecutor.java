@@ -0,0 +1,196 @@
+package com.study.querydsl.repository.support;
+
+import com.study.querydsl.config.ReadYourWrites;
+import com.study.querydsl.diagnostics.StatementCounter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 페이지 조회 시 content 쿼리와 count 쿼리를 동시에 실행한다.
+ * <p>
+ * count 쿼리는 별도 스레드에서 새 EntityManager(= 별도 커넥션)로 실행하므로 커밋된 데이터만 본다.
+ * 그래서 쓰기 트랜잭션 안에서 호출되면 원래처럼 순서대로 실행한다.
+ * <p>
+ * 호출한 스레드는 이미 커넥션을 하나 잡고 있으므로, 커넥션 풀이 바닥났을 때 서로 기다리다 멈추지 않도록
+ * <ul>
+ *     <li>스레드 수는 커넥션 풀 크기의 절반, count 작업 하나는 커넥션을 하나만 쓴다. (팀명 -> 팀 id는 호출한 쪽에서 미리 바꾼다)</li>
+ *     <li>큐가 차서 못 넣었거나, content를 다 읽을 때까지 count가 시작되지 않았으면 호출한 스레드가 자기 커넥션으로 센다.</li>
+ *     <li>이미 실행 중인 count는 timeout 만큼만 기다리고, 넘으면 호출한 스레드가 다시 센다.</li>
+ * </ul>
+ * PageableExecutionUtils가 count를 건너뛰는 경우(첫 페이지인데 content가 pageSize보다 적은 경우 등)에는
+ * 결과를 버린다. 이미 실행 중인 쿼리를 끊지는 않는다.
+ */
+@Component
+public class ParallelCountExecutor implements DisposableBean {
+    private final boolean enabled;
+    private final long timeoutNanos;
+    private final EntityManager entityManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final StatementCounter statementCounter;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong parallelPages = new AtomicLong();
+    private final AtomicLong discardedCounts = new AtomicLong();
+    // 병렬로 못 돌리고 호출한 스레드에서 센 횟수 (큐가 참, 시작 전, timeout)
+    private final AtomicLong inlineCounts = new AtomicLong();
+    // (content 시간 + count 시간) - 실제 걸린 시간의 합
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    public ParallelCountExecutor(@Value("${querydsl.page.parallel-count.enabled:false}") boolean enabled,
+                                 @Value("${querydsl.page.parallel-count.timeout:2s}") Duration timeout,
+                                 ConnectionPoolSize connectionPoolSize,
+                                 EntityManager entityManager,
+                                 EntityManagerFactory entityManagerFactory,
+                                 StatementCounter statementCounter) {
+        this.enabled = enabled;
+        this.timeoutNanos = timeout.toNanos();
+        this.entityManager = entityManager;
+        this.entityManagerFactory = entityManagerFactory;
+        this.statementCounter = statementCounter;
+        int threads = Math.max(1, connectionPoolSize.get() / 2);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4),
+                new CustomizableThreadFactory("count-query-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param contentQuery 호출한 스레드에서 실행하는 content 쿼리
+     * @param countQuery   주어진 EntityManager로 실행하는 count 쿼리
+     */
+    public <T> Page<T> getPage(Pageable pageable, Supplier<List<T>> contentQuery,
+                               Function<EntityManager, Long> countQuery) {
+        boolean inWriteTransaction = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!enabled || inWriteTransaction) {
+            List<T> content = contentQuery.get();
+            return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.apply(entityManager));
+        }
+
+        long start = System.nanoTime();
+        AtomicLong countNanos = new AtomicLong();
+        // count 스레드와 호출한 스레드 중 먼저 잡은 쪽이 센다.
+        AtomicBoolean claimed = new AtomicBoolean();
+        CompletableFuture<Long> count;
+        try {
+            // count 스레드에서 실행한 sql도 요청 범위(StatementBudgetFilter)에 센다.
+            // content와 같은 쪽(primary/replica)을 읽도록 ReadYourWrites도 넘긴다.
+            count = CompletableFuture.supplyAsync(ReadYourWrites.propagate(statementCounter.propagate(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                long countStart = System.nanoTime();
+                EntityManager countEntityManager = entityManagerFactory.createEntityManager();
+                try {
+                    return countQuery.apply(countEntityManager);
+                } finally {
+                    countEntityManager.close();
+                    countNanos.set(System.nanoTime() - countStart);
+                }
+            })), executor);
+        } catch (RejectedExecutionException e) {
+            inlineCounts.incrementAndGet();
+            List<T> content = contentQuery.get();
+            return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.apply(entityManager));
+        }
+
+        List<T> content;
+        try {
+            content = contentQuery.get();
+        } catch (RuntimeException e) {
+            claimed.set(true);
+            count.cancel(false);
+            throw e;
+        }
+        long contentNanos = System.nanoTime() - start;
+
+        AtomicBoolean countUsed = new AtomicBoolean();
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            countUsed.set(true);
+            // 아직 시작 안 했으면 기다리지 않고 직접 센다.
+            if (claimed.compareAndSet(false, true)) {
+                count.cancel(false);
+                inlineCounts.incrementAndGet();
+                return countQuery.apply(entityManager);
+            }
+            Long parallel = join(count);
+            if (parallel == null) {
+                inlineCounts.incrementAndGet();
+                return countQuery.apply(entityManager);
+            }
+            parallelPages.incrementAndGet();
+            savedNanos.addAndGet(contentNanos + countNanos.get() - (System.nanoTime() - start));
+            return parallel;
+        });
+        if (!countUsed.get()) {
+            claimed.set(true);
+            count.cancel(false);
+            discardedCounts.incrementAndGet();
+        }
+        return page;
+    }
+
+    // timeout이 지나면 null. 호출한 쪽에서 다시 센다.
+    private Long join(CompletableFuture<Long> count) {
+        try {
+            return count.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the count query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public long getParallelPages() {
+        return parallelPages.get();
+    }
+
+    public long getDiscardedCounts() {
+        return discardedCounts.get();
+    }
+
+    public long getInlineCounts() {
+        return inlineCounts.get();
+    }
+
+    public long getSavedNanos() {
+        return savedNanos.get();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
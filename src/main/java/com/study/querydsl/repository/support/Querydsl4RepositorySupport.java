@@ -3,9 +3,12 @@ package com.study.querydsl.repository.support;
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.JPQLQueryFactory;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
@@ -15,11 +18,13 @@ import org.springframework.data.querydsl.SimpleEntityPathResolver;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -33,6 +38,9 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private ParallelCountExecutor parallelCountExecutor;
+    private RepositoryMetrics metrics;
+    private EntityReadMode entityReadMode = EntityReadMode.MANAGED;
 
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
@@ -52,11 +60,28 @@ public abstract class Querydsl4RepositorySupport {
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
 
+    @Autowired
+    public void setParallelCountExecutor(ParallelCountExecutor parallelCountExecutor) {
+        this.parallelCountExecutor = parallelCountExecutor;
+    }
+
+    @Autowired
+    public void setMetrics(RepositoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Value("${member.search.entity-read-mode:managed}")
+    public void setEntityReadMode(EntityReadMode entityReadMode) {
+        this.entityReadMode = entityReadMode;
+    }
+
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(parallelCountExecutor, "ParallelCountExecutor must not be null!");
+        Assert.notNull(metrics, "RepositoryMetrics must not be null!");
     }
 
     protected JPAQueryFactory getQueryFactory() {
@@ -71,6 +96,34 @@ public abstract class Querydsl4RepositorySupport {
         return entityManager;
     }
 
+    protected EntityReadMode getEntityReadMode() {
+        return entityReadMode;
+    }
+
+    /**
+     * 정렬 키 허용 목록. null이 아니면 applyPagination이 스프링 Querydsl 대신 이걸로 정렬/페이징한다.
+     * join한 별칭(teamName -> team.name)으로 정렬하려면 하위 클래스에서 돌려준다.
+     */
+    protected SortTranslator getSortTranslator() {
+        return null;
+    }
+
+    protected <T> JPQLQuery<T> applyPaging(Pageable pageable, JPQLQuery<T> query) {
+        SortTranslator sortTranslator = getSortTranslator();
+        if (sortTranslator == null) {
+            return getQuerydsl().applyPagination(pageable, query);
+        }
+        return sortTranslator.applyPagination(pageable, query);
+    }
+
+    /**
+     * 엔티티를 돌려주는 조회는 이걸로 실행하면 {@link EntityReadMode}가 적용된다.
+     * STATELESS면 JPAQueryFactory 대신 HibernateQueryFactory가 넘어온다.
+     */
+    protected <T> List<T> fetchEntities(Function<JPQLQueryFactory, JPQLQuery<T>> query) {
+        return ReadOnlyQueries.fetch(entityReadMode, getEntityManager(), query);
+    }
+
     protected <T> JPAQuery<T> select(Expression<T> expr) {
         return getQueryFactory().select(expr);
     }
@@ -79,23 +132,57 @@ public abstract class Querydsl4RepositorySupport {
         return getQueryFactory().selectFrom(from);
     }
 
+    /**
+     * content 쿼리에서 불필요한 left join, fetch join, order by를 뺀 count 쿼리를 만든다.
+     * applyPaging이 content 쿼리에 정렬/페이징을 붙이기 전에 호출해야 한다.
+     *
+     * @see CountQueryDeriver
+     */
+    protected LongSupplier countQueryOf(JPAQuery<?> contentQuery) {
+        return timedCount(CountQueryDeriver.derive(getQueryFactory(), contentQuery));
+    }
+
+    // repository.count 메트릭. 검색 조건은 모르므로 method 태그만 의미가 있다.
+    private LongSupplier timedCount(LongSupplier countQuery) {
+        String method = ClassUtils.getUserClass(getClass()).getSimpleName() + ".applyPagination";
+        return metrics.count(method, RepositoryMetrics.ANY_SHAPE, countQuery);
+    }
+
+    // count 쿼리를 따로 주지 않으면 content 쿼리에서 만든다.
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable,
+        if (parallelCountExecutor.isEnabled()) {
+            // content 쿼리에 정렬/페이징이 붙기 전에 count 쿼리를 떼어 놓고, 다른 EntityManager로 복제해서 실행한다.
+            JPAQuery<Long> derived = CountQueryDeriver.deriveQuery(getQueryFactory(), jpaQuery);
+            JPAQuery<?> fallback = derived == null ? jpaQuery.clone() : null;
+            return parallelCountExecutor.getPage(pageable,
+                    () -> applyPaging(pageable, jpaQuery).fetch(),
+                    em -> timedCount(() -> derived != null ? derived.clone(em).fetchOne() : fallback.clone(em).fetchCount())
+                            .getAsLong());
+        }
+        LongSupplier countQuery = countQueryOf(jpaQuery);
+        List<T> content = applyPaging(pageable,
                 jpaQuery).fetch();
         return PageableExecutionUtils.getPage(content, pageable,
-                jpaQuery::fetchCount);
+                countQuery);
     }
 
+    // 병렬 count가 켜져 있으면 countQuery는 count 스레드에서 실행된다.
+    // 다른 빈(TeamDirectory 등)을 읽어야 하는 조건은 호출하는 쪽에서 미리 만들어 넘긴다. (커넥션을 하나 더 잡지 않게)
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
             JPAQuery> countQuery) {
         JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable,
+        if (parallelCountExecutor.isEnabled()) {
+            return parallelCountExecutor.getPage(pageable,
+                    () -> applyPaging(pageable, jpaContentQuery).fetch(),
+                    em -> timedCount(() -> countQuery.apply(new JPAQueryFactory(em)).fetchCount()).getAsLong());
+        }
+        List<T> content = applyPaging(pageable,
                 jpaContentQuery).fetch();
         JPAQuery countResult = countQuery.apply(getQueryFactory());
         return PageableExecutionUtils.getPage(content, pageable,
-                countResult::fetchCount);
+                timedCount(countResult::fetchCount));
     }
 }
@@ -0,0 +1,71 @@
+package com.study.querydsl.repository.support;
+
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.JPQLQueryFactory;
+import com.querydsl.jpa.hibernate.HibernateQueryFactory;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * {@link EntityReadMode}에 맞춰 엔티티 조회를 실행한다.
+ * <p>
+ * 스프링의 readOnly 트랜잭션이면 hibernate 세션 자체가 read-only + MANUAL이 되지만,
+ * 레포지토리의 readOnly는 바깥 쓰기 트랜잭션에 참여할 때는 적용되지 않으므로 쿼리에 직접 힌트를 건다.
+ * 단, 쓰기 트랜잭션 안에서는 아직 flush 하지 않은 변경이 조회에 보여야 하므로 flush mode는 건드리지 않는다.
+ */
+public final class ReadOnlyQueries {
+
+    private ReadOnlyQueries() {
+    }
+
+    public static <T> JPAQuery<T> readOnly(JPAQuery<T> query) {
+        query.setHint(QueryHints.READ_ONLY, true);
+        if (!inWriteTransaction()) {
+            query.setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+        }
+        return query;
+    }
+
+    public static <T> JPAQuery<T> apply(EntityReadMode mode, JPAQuery<T> query) {
+        return mode == EntityReadMode.MANAGED ? query : readOnly(query);
+    }
+
+    /**
+     * 쿼리는 JPAQueryFactory, HibernateQueryFactory 둘 다로 만들 수 있게 JPQLQuery로 받는다.
+     * STATELESS면 현재 트랜잭션의 커넥션으로 StatelessSession을 열어서 실행한다.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> fetch(EntityReadMode mode, EntityManager em,
+                                    Function<JPQLQueryFactory, JPQLQuery<T>> query) {
+        if (mode != EntityReadMode.STATELESS) {
+            return apply(mode, (JPAQuery<T>) query.apply(new JPAQueryFactory(em))).fetch();
+        }
+        Session session = em.unwrap(Session.class);
+        // StatelessSession은 같은 커넥션으로 DB를 직접 읽으므로 쌓여 있는 변경을 먼저 내보낸다.
+        if (inWriteTransaction()) {
+            session.flush();
+        }
+        return session.doReturningWork(connection -> {
+            StatelessSession statelessSession = session.getSessionFactory().openStatelessSession(connection);
+            try {
+                return query.apply(new HibernateQueryFactory(statelessSession)).fetch();
+            } finally {
+                statelessSession.close();
+            }
+        });
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
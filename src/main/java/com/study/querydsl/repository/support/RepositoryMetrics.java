@@ -0,0 +1,144 @@
+package com.study.querydsl.repository.support;
+
+import com.study.querydsl.dto.MemberCursorPage;
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.repository.MemberSearchShape;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 레포지토리 조회 메트릭
+ * <ul>
+ *     <li>repository.query - 조회 시간</li>
+ *     <li>repository.query.rows - 조회된 row 수 (페이지면 content 크기)</li>
+ *     <li>repository.count - count 쿼리 시간</li>
+ * </ul>
+ * method(클래스명.메소드명)와 shape(검색 조건 중 채워진 필드, {@link MemberSearchShape}) 태그가 붙는다.
+ * /actuator/metrics/repository.query?tag=shape:teamName 처럼 조회한다.
+ * <p>
+ * repository.query, repository.query.rows는 {@link MeteredRepository}가 붙은 클래스의 public 메소드를 aspect로 잰다.
+ * Stream을 돌려주면 close 될 때까지 시간을 재고, 읽은 row 수를 남긴다.
+ * count 쿼리는 PageableExecutionUtils가 필요할 때만 부르므로 {@link #count}로 감싼다.
+ */
+@Aspect
+@Component
+public class RepositoryMetrics {
+    public static final String NO_CONDITION = "none";
+    // 검색 조건을 모르는 공통 코드(Querydsl4RepositorySupport)에서 쓰는 태그
+    public static final String ANY_SHAPE = "any";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> queryTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> countTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rowSummaries = new ConcurrentHashMap<>();
+
+    public RepositoryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("@within(com.study.querydsl.repository.support.MeteredRepository) && execution(public * *(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = ClassUtils.getUserClass(joinPoint.getTarget()).getSimpleName()
+                + '.' + joinPoint.getSignature().getName();
+        String shape = shapeOf(joinPoint.getArgs());
+        Timer.Sample sample = Timer.start(registry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            sample.stop(queryTimer(method, shape));
+            throw e;
+        }
+        // stream은 다 읽고 close 할 때까지가 조회 시간이다.
+        if (result instanceof Stream) {
+            AtomicLong rows = new AtomicLong();
+            return ((Stream<?>) result)
+                    .peek(row -> rows.incrementAndGet())
+                    .onClose(() -> {
+                        sample.stop(queryTimer(method, shape));
+                        rowSummary(method, shape).record(rows.get());
+                    });
+        }
+        sample.stop(queryTimer(method, shape));
+        Integer rows = rowsOf(result);
+        if (rows != null) {
+            rowSummary(method, shape).record(rows);
+        }
+        return result;
+    }
+
+    // count 쿼리는 PageableExecutionUtils가 필요할 때만 실행하므로, 실행될 때 시간을 재도록 감싸서 돌려준다.
+    public LongSupplier count(String method, MemberSearchCondition condition, LongSupplier countQuery) {
+        return count(method, shapeOf(condition), countQuery);
+    }
+
+    public LongSupplier count(String method, String shape, LongSupplier countQuery) {
+        Timer timer = countTimer(method, shape);
+        return () -> timer.record(() -> countQuery.getAsLong());
+    }
+
+    private String shapeOf(MemberSearchCondition condition) {
+        return MemberSearchShape.of(condition).toString();
+    }
+
+    private String shapeOf(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition) {
+                return shapeOf((MemberSearchCondition) arg);
+            }
+        }
+        return NO_CONDITION;
+    }
+
+    // 페이지면 content 크기. row 수를 모르는 결과면 null
+    private Integer rowsOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof MemberCursorPage) {
+            return ((MemberCursorPage) result).getContent().size();
+        }
+        return null;
+    }
+
+    private Timer queryTimer(String method, String shape) {
+        return queryTimers.computeIfAbsent(method + '|' + shape, key -> Timer.builder("repository.query")
+                .tag("method", method)
+                .tag("shape", shape)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry));
+    }
+
+    private Timer countTimer(String method, String shape) {
+        return countTimers.computeIfAbsent(method + '|' + shape, key -> Timer.builder("repository.count")
+                .tag("method", method)
+                .tag("shape", shape)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry));
+    }
+
+    private DistributionSummary rowSummary(String method, String shape) {
+        return rowSummaries.computeIfAbsent(method + '|' + shape, key -> DistributionSummary.builder("repository.query.rows")
+                .tag("method", method)
+                .tag("shape", shape)
+                .serviceLevelObjectives(1, 10, 100, 1000, 10000)
+                .register(registry));
+    }
+}
@@ -0,0 +1,101 @@
+package com.study.querydsl.repository.support;
+
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.jpa.JPQLQuery;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pageable의 Sort를 querydsl OrderSpecifier로 바꾼다.
+ * <p>
+ * 스프링의 Querydsl.applyPagination은 정렬 키를 엔티티 프로퍼티로만 해석해서 join한 별칭(teamName -> team.name)으로는 정렬하지 못하고,
+ * 요청이 주는 아무 프로퍼티로나 정렬해서 인덱스가 없는 컬럼이면 DB가 전체를 읽어 정렬(filesort)한다.
+ * 여기서는 등록된 키(인덱스가 있는 경로)만 허용하고, 나머지는 {@link UnsupportedSortException}으로 거절한다.
+ * <p>
+ * 같은 값이 여러 개면 offset 페이지 사이에서 row가 중복/누락될 수 있으므로 마지막에 항상 tieBreaker(보통 pk) 오름차순을 붙인다.
+ */
+public final class SortTranslator {
+    private final Map<String, ComparableExpressionBase<?>> paths;
+    private final ComparableExpressionBase<?> tieBreaker;
+
+    private SortTranslator(Map<String, ComparableExpressionBase<?>> paths, ComparableExpressionBase<?> tieBreaker) {
+        this.paths = Collections.unmodifiableMap(paths);
+        this.tieBreaker = tieBreaker;
+    }
+
+    public static Builder builder(ComparableExpressionBase<?> tieBreaker) {
+        return new Builder(tieBreaker);
+    }
+
+    public OrderSpecifier<?>[] translate(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        boolean tieBroken = false;
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = paths.get(order.getProperty());
+            if (path == null) {
+                throw new UnsupportedSortException("Unsupported sort property: " + order.getProperty()
+                        + " (allowed: " + paths.keySet() + ")");
+            }
+            // lower(...)로 감싸면 인덱스를 못 탄다.
+            if (order.isIgnoreCase()) {
+                throw new UnsupportedSortException("Case-insensitive sort is not supported: " + order.getProperty());
+            }
+            orders.add(toOrderSpecifier(path, order));
+            tieBroken |= path.equals(tieBreaker);
+        }
+        if (!tieBroken) {
+            orders.add(tieBreaker.asc());
+        }
+        return orders.toArray(new OrderSpecifier[0]);
+    }
+
+    // Querydsl.applyPagination 대신 쓴다. 페이징하지 않는 Pageable이면 정렬만 붙인다.
+    public <T> JPQLQuery<T> applyPagination(Pageable pageable, JPQLQuery<T> query) {
+        query.orderBy(translate(pageable.getSort()));
+        if (pageable.isPaged()) {
+            query.offset(pageable.getOffset());
+            query.limit(pageable.getPageSize());
+        }
+        return query;
+    }
+
+    private OrderSpecifier<?> toOrderSpecifier(ComparableExpressionBase<?> path, Sort.Order order) {
+        OrderSpecifier<?> specifier = order.isAscending() ? path.asc() : path.desc();
+        switch (order.getNullHandling()) {
+            case NULLS_FIRST:
+                return specifier.nullsFirst();
+            case NULLS_LAST:
+                return specifier.nullsLast();
+            default:
+                return specifier;
+        }
+    }
+
+    public static final class Builder {
+        private final Map<String, ComparableExpressionBase<?>> paths = new LinkedHashMap<>();
+        private final ComparableExpressionBase<?> tieBreaker;
+
+        private Builder(ComparableExpressionBase<?> tieBreaker) {
+            Assert.notNull(tieBreaker, "Tie-breaker must not be null!");
+            this.tieBreaker = tieBreaker;
+        }
+
+        public Builder path(String property, ComparableExpressionBase<?> path) {
+            paths.put(property, path);
+            return this;
+        }
+
+        public SortTranslator build() {
+            return new SortTranslator(new LinkedHashMap<>(paths), tieBreaker);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.study.querydsl.repository.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// 정렬 키가 허용 목록(SortTranslator)에 없는 경우. 컨트롤러까지 올라오면 400
+// InvalidSearchRequestException과 같은 이유로 IllegalArgumentException을 상속하지 않는다. (레포지토리 프록시가 500으로 바꾼다)
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedSortException extends RuntimeException {
+    public UnsupportedSortException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,114 @@
+package com.study.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 메모리 H2 두 개로 primary / replica 라우팅 확인
+class ReplicationRoutingDataSourceTest {
+    DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1", "sa", "");
+    DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", "sa", "");
+
+    @AfterEach
+    public void clear(){
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    public void readOnlyGoesToReplica() throws SQLException {
+        ReplicationRoutingDataSource routing = routing(Duration.ZERO);
+
+        assertThat(url(routing)).contains("primary");
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(url(routing)).contains("replica");
+    }
+
+    @Test
+    public void readYourWrites() throws SQLException {
+        ReplicationRoutingDataSource routing = routing(Duration.ofMinutes(1));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // 쓴 적 없는 클라이언트는 replica
+        ReadYourWrites.bind(new ReadYourWrites.Client(0, null, 60));
+        assertThat(url(routing)).contains("replica");
+
+        // 방금 쓴 클라이언트만 primary
+        ReadYourWrites.bind(new ReadYourWrites.Client(System.currentTimeMillis(), null, 60));
+        assertThat(url(routing)).contains("primary");
+
+        // 다른 클라이언트(요청 밖)는 계속 replica
+        ReadYourWrites.clear();
+        assertThat(url(routing)).contains("replica");
+    }
+
+    @Test
+    public void markWriteOnCommit() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ReadYourWrites.bind(new ReadYourWrites.Client(0, response, 60));
+        TransactionSynchronizationManager.initSynchronization();
+
+        ReadYourWrites.markWrite();
+        ReadYourWrites.markWrite();
+        assertThat(ReadYourWrites.lastWriteAt()).isZero();
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+
+        // 커밋된 뒤에 기록하고 쿠키로 돌려준다.
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(ReadYourWrites.lastWriteAt()).isPositive();
+        Cookie cookie = response.getCookie(ReadYourWrites.COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getValue()).isEqualTo(Long.toString(ReadYourWrites.lastWriteAt()));
+        assertThat(cookie.getMaxAge()).isEqualTo(60);
+    }
+
+    @Test
+    public void filterReadsCookie() throws ServletException, IOException {
+        long wroteAt = System.currentTimeMillis() - 500;
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWrites.COOKIE_NAME, Long.toString(wroteAt)));
+        AtomicReference<Long> seen = new AtomicReference<>();
+
+        new ReadYourWritesFilter(Duration.ofSeconds(2)).doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> seen.set(ReadYourWrites.lastWriteAt()));
+
+        assertThat(seen.get()).isEqualTo(wroteAt);
+        // 요청이 끝나면 떼어낸다.
+        assertThat(ReadYourWrites.lastWriteAt()).isZero();
+    }
+
+    private ReplicationRoutingDataSource routing(Duration readYourWritesWindow) {
+        ReplicationRoutingDataSource routing = new ReplicationRoutingDataSource(primary, replica, readYourWritesWindow);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private String url(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.study.querydsl.controller;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.entitly.Member;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSearchETagsTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberSearchETags memberSearchETags;
+
+    @Test
+    public void sameConditionSameETag() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        MemberSearchCondition blankUsername = new MemberSearchCondition();
+        blankUsername.setTeamName("teamA");
+        blankUsername.setUsername("");
+
+        assertThat(memberSearchETags.of("/v1/members", condition))
+                .isEqualTo(memberSearchETags.of("/v1/members", blankUsername));
+        assertThat(memberSearchETags.of("/v2/members", condition, PageRequest.of(0, 20)))
+                .isNotEqualTo(memberSearchETags.of("/v2/members", condition, PageRequest.of(1, 20)));
+    }
+
+    @Test
+    public void writeChangesETag() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        String before = memberSearchETags.of("/v1/members", condition);
+
+        em.persist(new Member("member1", 10));
+        em.flush();
+
+        assertThat(memberSearchETags.of("/v1/members", condition)).isNotEqualTo(before);
+    }
+}
@@ -0,0 +1,72 @@
+package com.study.querydsl.controller;
+
+import com.study.querydsl.diagnostics.StatementCounter;
+import com.study.querydsl.diagnostics.StatementScope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 커넥션 1개, 대기열 1개짜리 실행기로 거절 정책 확인
+class MemberSearchExecutorTest {
+    StatementCounter statementCounter = new StatementCounter(true, StatementCounter.Mode.LOG, 50, 10, new SimpleMeterRegistry());
+    MemberSearchExecutor executor = new MemberSearchExecutor(true, 1, 1, false, statementCounter);
+    CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void after() {
+        release.countDown();
+        executor.destroy();
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() {
+        CompletableFuture<String> running = executor.submit(this::slowQuery);
+        CompletableFuture<String> queued = executor.submit(this::slowQuery);
+
+        assertThatThrownBy(() -> executor.submit(this::slowQuery))
+                .isInstanceOf(SearchRejectedException.class);
+        assertThat(executor.getRejectedCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.join()).isEqualTo("done");
+        assertThat(queued.join()).isEqualTo("done");
+    }
+
+    @Test
+    public void runInlineWhenDisabled() {
+        MemberSearchExecutor inline = new MemberSearchExecutor(false, 0, 1, false, statementCounter);
+
+        CompletableFuture<String> result = inline.submit(() -> Thread.currentThread().getName());
+
+        assertThat(result).isCompletedWithValue(Thread.currentThread().getName());
+        inline.destroy();
+    }
+
+    @Test
+    public void countStatementsInCallerScope() {
+        try (StatementScope scope = statementCounter.open("request")) {
+            String thread = executor.submit(() -> {
+                statementCounter.inspect("select * from member");
+                return Thread.currentThread().getName();
+            }).join();
+
+            assertThat(thread).startsWith("member-search-");
+            assertThat(scope.getCount()).isEqualTo(1);
+        }
+    }
+
+    private String slowQuery() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
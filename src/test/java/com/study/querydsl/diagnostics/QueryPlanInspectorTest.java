@@ -0,0 +1,54 @@
+package com.study.querydsl.diagnostics;
+
+import com.study.querydsl.dto.QueryPlanReport;
+import com.study.querydsl.entitly.Team;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "diagnostics.query-plans.enabled=true")
+@Transactional
+class QueryPlanInspectorTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    QueryPlanInspector queryPlanInspector;
+
+    @Test
+    public void inspect(){
+        // 팀명 조건은 있는 팀이어야 count 쿼리가 나간다. (TeamDirectory.matchesNoTeam)
+        em.persist(new Team("teamA"));
+        em.flush();
+
+        List<QueryPlanReport> reports = queryPlanInspector.inspect();
+        // 16가지 모양 x (searchPageSimple, searchPageComplex) x (content, count)
+        assertThat(reports).hasSize(64);
+        // 직접 쓴 sql이 아니라 hibernate가 만든 sql이다. v3 count는 팀명을 팀 id in (...)으로 건다.
+        assertThat(reports)
+                .filteredOn(report -> report.getShape().equals("teamName") && report.getQuery().equals("searchPageComplex.count"))
+                .singleElement()
+                .satisfies(report -> assertThat(report.getSql()).contains(" in (").doesNotContain("join"));
+        // 회원명, 나이 조건은 인덱스를 탄다.
+        assertThat(reports)
+                .filteredOn(report -> report.getShape().equals("username") || report.getShape().equals("ageGoe+ageLoe"))
+                .noneMatch(QueryPlanReport::isTableScan);
+    }
+
+    @Test
+    public void notInspectedWithoutTeam(){
+        // 팀이 없으면 팀명 조건은 sql 없이 빈 결과가 된다. 못 본 쿼리는 풀 스캔 없음이 아니라 inspected=false로 나온다.
+        List<QueryPlanReport> reports = queryPlanInspector.inspect();
+        assertThat(reports).hasSize(64);
+        assertThat(reports)
+                .filteredOn(report -> report.getShape().equals("teamName") && report.getQuery().equals("searchPageComplex.count"))
+                .singleElement()
+                .satisfies(report -> assertThat(report.isInspected()).isFalse());
+        assertThat(queryPlanInspector.findTableScans()).anyMatch(report -> !report.isInspected());
+    }
+}
@@ -0,0 +1,47 @@
+package com.study.querydsl.diagnostics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// v2는 검색 스레드(MemberSearchExecutor)에서 실행되므로, 거기서 나간 sql이 요청 범위에 잡히는지 본다.
+@SpringBootTest(properties = {
+        "member.async.enabled=true",
+        "diagnostics.statement-budget.enabled=true",
+        "diagnostics.statement-budget.mode=metric"
+})
+@AutoConfigureMockMvc
+class StatementBudgetFilterTest {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    public void countStatementsOfAsyncSearch() throws Exception {
+        DistributionSummary statements = meterRegistry.summary("sql.statements", "scope", "scope");
+        long before = statements.count();
+        double totalBefore = statements.totalAmount();
+
+        MvcResult result = mockMvc.perform(get("/v2/members").param("page", "0").param("size", "10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        // 요청 범위는 비동기 처리가 끝날 때 한 번 닫히고, 검색 스레드의 sql(count, content)을 포함한다.
+        assertThat(statements.count()).isEqualTo(before + 1);
+        assertThat(statements.totalAmount()).isGreaterThan(totalBefore);
+    }
+}
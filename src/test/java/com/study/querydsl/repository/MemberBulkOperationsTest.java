@@ -0,0 +1,118 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 구간마다 별도 트랜잭션으로 커밋하므로 테스트 트랜잭션(@Transactional)으로 감싸지 않고 직접 지운다.
+@SpringBootTest(properties = "member.bulk.chunk-size=3")
+class MemberBulkOperationsTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberBulkOperations bulkOperations;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    ApplicationContext context;
+    @Autowired
+    BulkEvents bulkEvents;
+
+    TransactionTemplate tx;
+
+    @TestConfiguration
+    static class BulkEvents {
+        final List<EntityChangedEvent> events = new ArrayList<>();
+
+        @EventListener
+        public void on(EntityChangedEvent event) {
+            if (event.isBulk()) {
+                events.add(event);
+            }
+        }
+    }
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        bulkEvents.events.clear();
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 1; i <= 10; i++) {
+                em.persist(new Member("member" + i, i * 10, teamA));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+        RepositoryCaches.invalidateAll(context);
+    }
+
+    @Test
+    public void updateInChunksTest() {
+        List<MemberBulkOperations.BulkProgress> progress = new ArrayList<>();
+
+        long count = bulkOperations.update(member.age.lt(80),
+                clause -> clause.set(member.age, member.age.add(1)), progress::add);
+
+        // 나이 10 ~ 70 인 7명을 3명씩 -> 3구간
+        assertThat(count).isEqualTo(7);
+        assertThat(progress).extracting("chunkRows").containsExactly(3L, 3L, 1L);
+        assertThat(progress.get(2).getTotalRows()).isEqualTo(7);
+        assertThat(bulkEvents.events).extracting(e -> e.getIds().size()).containsExactly(3, 3, 1);
+
+        List<Integer> ages = tx.execute(status -> em
+                .createQuery("select m.age from Member m order by m.id", Integer.class)
+                .getResultList());
+        assertThat(ages).containsExactly(11, 21, 31, 41, 51, 61, 71, 80, 90, 100);
+    }
+
+    @Test
+    public void evictOnlyAffectedTest() {
+        tx.executeWithoutResult(status -> {
+            List<Member> members = em.createQuery("select m from Member m order by m.id", Member.class)
+                    .getResultList();
+
+            bulkOperations.update(member.age.gt(50), clause -> clause.set(member.username, "비회원"));
+
+            // 바뀐 회원만 영속성 컨텍스트에서 빠지고 나머지는 그대로 남는다.
+            assertThat(members.subList(0, 5)).allMatch(em::contains);
+            assertThat(members.subList(5, 10)).noneMatch(em::contains);
+            assertThat(em.find(Member.class, members.get(9).getId()).getUsername()).isEqualTo("비회원");
+        });
+    }
+
+    @Test
+    public void deleteTest() {
+        long count = bulkOperations.delete(member.age.goe(50));
+
+        assertThat(count).isEqualTo(6);
+        Long remaining = tx.execute(status -> em
+                .createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult());
+        assertThat(remaining).isEqualTo(4);
+    }
+}
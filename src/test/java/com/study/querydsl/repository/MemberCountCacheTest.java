@@ -0,0 +1,50 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.entitly.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 시점을 봐야 하므로 테스트 트랜잭션(@Transactional)으로 감싸지 않고 직접 지운다.
+@SpringBootTest
+class MemberCountCacheTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberCountCache countCache;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void after() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                em.createQuery("delete from Member").executeUpdate());
+        countCache.invalidateAll();
+    }
+
+    @Test
+    public void invalidateAfterCommit() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.persist(new Member("member1", 10));
+            em.flush();
+            // flush(이벤트)와 커밋 사이에 다른 스레드가 옛 count를 캐시에 넣는다.
+            CompletableFuture.runAsync(() -> countCache.get(condition, () -> 0L)).join();
+            assertThat(countCache.size()).isEqualTo(1);
+        });
+
+        // 커밋이 끝나면 다시 비워져 있어야 한다.
+        assertThat(countCache.size()).isZero();
+        assertThat(countCache.get(condition, () -> 1L)).isEqualTo(1L);
+    }
+}
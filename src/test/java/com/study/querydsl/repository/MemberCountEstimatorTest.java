@@ -0,0 +1,96 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.EstimatedPage;
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 테이블 통계(ROW_COUNT_ESTIMATE)는 커밋된 row 기준이라 테스트 트랜잭션으로 감싸지 않고 직접 지운다.
+@SpringBootTest(properties = "member.search.estimate-sample-size=20")
+class MemberCountEstimatorTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberCountEstimator countEstimator;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    ApplicationContext context;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 1; i <= 100; i++) {
+                em.persist(new Member("member" + i, i, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+        RepositoryCaches.invalidateAll(context);
+    }
+
+    @Test
+    public void estimateTest() {
+        // 조건이 없으면 테이블 통계
+        MemberSearchCondition condition = new MemberSearchCondition();
+        MemberCountEstimator.Estimate all = countEstimator.estimate(condition);
+        assertThat(all.isEstimated()).isTrue();
+        assertThat(all.getCount()).isBetween(80L, 120L);
+
+        // 조건이 있으면 표본 구간에서 구한 비율 (실제 50명)
+        condition.setAgeGoe(51);
+        MemberCountEstimator.Estimate filtered = countEstimator.estimate(condition);
+        assertThat(filtered.isEstimated()).isTrue();
+        assertThat(filtered.getCount()).isBetween(30L, 70L);
+
+        // 없는 팀은 세지 않아도 0
+        condition.setTeamName("noSuchTeam");
+        assertThat(countEstimator.estimate(condition).getCount()).isZero();
+    }
+
+    @Test
+    public void searchPageEstimatedTest() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(51);
+
+        Page<MemberTeamDto> first = memberRepository.searchPageEstimated(condition, PageRequest.of(0, 10));
+        assertThat(first.getContent()).hasSize(10);
+        assertThat(((EstimatedPage<MemberTeamDto>) first).isEstimated()).isTrue();
+
+        // 마지막 페이지면 total을 바로 안다.
+        Page<MemberTeamDto> last = memberRepository.searchPageEstimated(condition, PageRequest.of(1, 30));
+        assertThat(last.getContent()).hasSize(20);
+        assertThat(last.getTotalElements()).isEqualTo(50);
+        assertThat(((EstimatedPage<MemberTeamDto>) last).isEstimated()).isFalse();
+    }
+}
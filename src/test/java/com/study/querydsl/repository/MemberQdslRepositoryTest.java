@@ -4,6 +4,9 @@ import com.study.querydsl.dto.MemberSearchCondition;
 import com.study.querydsl.dto.MemberTeamDto;
 import com.study.querydsl.entitly.Member;
 import com.study.querydsl.entitly.Team;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -11,6 +14,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 @SpringBootTest
@@ -22,6 +27,8 @@ class MemberQdslRepositoryTest {
     MemberQdslRepository memberQdslRepository;
     @Autowired
     MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
     @Test
     public void basicTest(){
         Member member = new Member("seunghee", 23);
@@ -57,4 +64,56 @@ class MemberQdslRepositoryTest {
         List<MemberTeamDto> result = memberQdslRepository.search(condition);
         assertThat(result).extracting("username").containsExactly("member3", "member4");
     }
-}
\ No newline at end of file
+    @Test
+    public void searchStreamTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        try (Stream<MemberTeamDto> stream = memberQdslRepository.searchStream(condition)) {
+            List<MemberTeamDto> result = stream.collect(Collectors.toList());
+            assertThat(result).extracting("username").containsExactly("member2", "member3", "member4");
+        }
+    }
+    @Test
+    public void searchStreamMetricsTest(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        long before = streamTimer().count();
+        double rowsBefore = streamRows().totalAmount();
+        try (Stream<MemberTeamDto> stream = memberQdslRepository.searchStream(condition)) {
+            stream.forEach(row -> { });
+            // 다 읽기 전까지(close 전)는 기록되지 않는다.
+            assertThat(streamTimer().count()).isEqualTo(before);
+        }
+        assertThat(streamTimer().count()).isEqualTo(before + 1);
+        assertThat(streamRows().totalAmount()).isEqualTo(rowsBefore + 2);
+    }
+
+    private Timer streamTimer() {
+        return Timer.builder("repository.query")
+                .tag("method", "MemberQdslRepository.searchStream")
+                .tag("shape", "ageGoe")
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary streamRows() {
+        return DistributionSummary.builder("repository.query.rows")
+                .tag("method", "MemberQdslRepository.searchStream")
+                .tag("shape", "ageGoe")
+                .register(meterRegistry);
+    }
+}
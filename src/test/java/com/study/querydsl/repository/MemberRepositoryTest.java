@@ -1,15 +1,20 @@
 package com.study.querydsl.repository;
 
+import com.study.querydsl.diagnostics.StatementCounter;
+import com.study.querydsl.diagnostics.StatementScope;
+import com.study.querydsl.dto.MemberCursorPage;
 import com.study.querydsl.dto.MemberSearchCondition;
 import com.study.querydsl.dto.MemberTeamDto;
 import com.study.querydsl.entitly.Member;
 import com.study.querydsl.entitly.QMember;
 import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.UnsupportedSortException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
@@ -17,6 +22,7 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.as;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Transactional
@@ -25,6 +31,8 @@ public class MemberRepositoryTest {
     EntityManager em;
     @Autowired
     MemberRepository memberRepository;
+    @Autowired
+    StatementCounter statementCounter;
     @Test
     public void basicTest(){
         Member member = new Member("seunghee", 23);
@@ -88,6 +96,98 @@ public class MemberRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member1","member2", "member3");
     }
 
+    @Test
+    public void searchPageComplexByTeamNameTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamB));
+
+        // count 쿼리는 팀명을 팀 id로 바꿔서 join 없이 센다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        Page<MemberTeamDto> result = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+        assertThat(result.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(result.getTotalElements()).isEqualTo(3);
+
+        condition.setTeamName("noSuchTeam");
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 2)).getTotalElements()).isZero();
+    }
+
+    @Test
+    public void searchPageSortTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        // join한 팀명으로 정렬할 수 있고, 나이가 같으면 member.id 순
+        MemberSearchCondition condition = new MemberSearchCondition();
+        Page<MemberTeamDto> byTeam = memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 3, Sort.by(Sort.Order.desc("teamName"), Sort.Order.asc("age"))));
+        assertThat(byTeam.getContent()).extracting("username").containsExactly("member3", "member4", "member1");
+        assertThat(byTeam.getTotalElements()).isEqualTo(4);
+
+        Page<MemberTeamDto> byAge = memberRepository.searchPageSimple(condition, PageRequest.of(1, 2, Sort.by("age")));
+        assertThat(byAge.getContent()).extracting("username").containsExactly("member3", "member4");
+
+        // 인덱스가 없는 키나 대소문자 무시 정렬은 거절한다.
+        assertThatThrownBy(() -> memberRepository.searchPageSimple(condition, PageRequest.of(0, 2, Sort.by("team.id"))))
+                .isInstanceOf(UnsupportedSortException.class);
+        assertThatThrownBy(() -> memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 2, Sort.by(Sort.Order.asc("username").ignoreCase()))))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
+
+    @Test
+    public void searchByCursorTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        MemberCursorPage first = memberRepository.searchByCursor(condition, null, 3);
+        assertThat(first.isHasNext()).isTrue();
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+
+        MemberCursorPage second = memberRepository.searchByCursor(condition, first.getNextCursor(), 3);
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+
+        // 크기와 커서가 잘못되면 400 (InvalidSearchRequestException)
+        assertThatThrownBy(() -> memberRepository.searchByCursor(condition, null, 0))
+                .isInstanceOf(InvalidSearchRequestException.class);
+        assertThatThrownBy(() -> memberRepository.searchByCursor(condition, null, Integer.MAX_VALUE))
+                .isInstanceOf(InvalidSearchRequestException.class);
+        assertThatThrownBy(() -> memberRepository.searchByCursor(condition, "not-a-cursor", 3))
+                .isInstanceOf(InvalidSearchRequestException.class);
+    }
+
     @Test
     public void querydslPredicateExecutorTest() {
         Team teamA = new Team("teamA");
@@ -113,4 +213,36 @@ public class MemberRepositoryTest {
             System.out.println("findMember = " + findMember);
         }
     }
+
+    @Test
+    public void statementCountTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+
+        // 엔티티로 조회한 뒤 팀 이름을 읽으면 팀 쿼리가 더 나간다.
+        // @BatchSize 덕분에 팀마다 한 번씩(N+1)이 아니라 in (...) 으로 한 번에 가져온다.
+        try (StatementScope scope = statementCounter.open("lazy team")) {
+            List<Member> members = memberRepository.findAll();
+            members.forEach(m -> m.getTeam().getName());
+            assertThat(scope.getCount()).isEqualTo(2);
+            assertThat(scope.getMaxRepeats()).isEqualTo(1);
+        }
+        em.clear();
+
+        // dto로 조인해서 가져오면 한 번에 끝난다.
+        try (StatementScope scope = statementCounter.open("dto search")) {
+            List<MemberTeamDto> result = memberRepository.search(new MemberSearchCondition());
+            assertThat(result).extracting("teamName").containsExactlyInAnyOrder("teamA", "teamA", "teamB", "teamB");
+            assertThat(scope.getCount()).isEqualTo(1);
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSearchQueriesTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberSearchQueries memberSearchQueries;
+    @Autowired
+    MemberQdslRepository memberQdslRepository;
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+    }
+
+    @Test
+    public void sameResultAsQuerydslForEveryShape(){
+        // 16가지 모양 모두 querydsl로 만든 search와 결과가 같아야 한다.
+        for (MemberSearchShape shape : MemberSearchShape.all()) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if (shape.has(MemberSearchShape.USERNAME)) condition.setUsername("member3");
+            if (shape.has(MemberSearchShape.TEAM_NAME)) condition.setTeamName("teamB");
+            if (shape.has(MemberSearchShape.AGE_GOE)) condition.setAgeGoe(20);
+            if (shape.has(MemberSearchShape.AGE_LOE)) condition.setAgeLoe(40);
+
+            List<MemberTeamDto> expected = memberQdslRepository.search(condition);
+            assertThat(memberSearchQueries.search(condition))
+                    .as(shape.toString())
+                    .containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(memberSearchQueries.count(condition)).isEqualTo(expected.size());
+        }
+    }
+
+    @Test
+    public void searchPage(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        Page<MemberTeamDto> result = memberSearchQueries.searchPage(condition, PageRequest.of(0, 2));
+        assertThat(result.getContent()).hasSize(2);
+        assertThat(result.getTotalElements()).isEqualTo(4);
+    }
+
+    @Test
+    public void samePagesAsQuerydsl(){
+        // 정렬이 없으면 querydsl 검색처럼 member.id 순으로 자른다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        for (int page = 0; page < 3; page++) {
+            PageRequest pageable = PageRequest.of(page, 2);
+            assertThat(memberSearchQueries.searchPage(condition, pageable).getContent())
+                    .containsExactlyElementsOf(memberRepository.searchPageSimple(condition, pageable).getContent());
+        }
+    }
+}
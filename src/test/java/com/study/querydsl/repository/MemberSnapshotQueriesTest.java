@@ -0,0 +1,117 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.CacheTtl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberSnapshotQueriesTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberSnapshotQueries memberSnapshotQueries;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    ApplicationContext context;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        // 팀 없는 회원: 팀명 조건이 있으면 빠져야 한다.
+        em.persist(new Member("member5", 50));
+        em.flush();
+    }
+
+    @Test
+    public void sameResultAsJpa() {
+        assertSame(condition(null, null, null, null));
+        assertSame(condition("member1", null, null, null));
+        assertSame(condition(null, "teamB", null, null));
+        assertSame(condition(null, null, 20, 40));
+        assertSame(condition("", "teamA", 15, null));
+        assertSame(condition(null, "teamC", null, null));
+    }
+
+    @Test
+    public void searchPage() {
+        Page<MemberTeamDto> page = memberSnapshotQueries.searchPage(condition(null, null, 20, null), PageRequest.of(1, 2));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting("username").containsExactly("member4", "member5");
+    }
+
+    @Test
+    public void keepTooLargeUntilRecheck() {
+        MemberSnapshotQueries small = new MemberSnapshotQueries(em, memberRepository, 2, Duration.ofMinutes(1), CacheTtl.none());
+        // 상태는 트랜잭션 밖에서 커밋된 내용으로 읽을 때만 남으므로 회원을 따로 커밋하고, 다른 스레드에서 검색한다.
+        TransactionTemplate committed = new TransactionTemplate(transactionManager);
+        committed.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        committed.executeWithoutResult(status -> {
+            for (int i = 1; i <= 3; i++) {
+                em.persist(new Member("large" + i, i));
+            }
+        });
+        try {
+            CompletableFuture.runAsync(() -> small.search(new MemberSearchCondition())).join();
+            assertThat(small.isTooLarge()).isTrue();
+
+            // 쓰기가 있어도 recheck 전까지는 다시 읽지 않고 JPA 검색으로 넘긴다.
+            small.invalidate();
+            assertThat(small.isTooLarge()).isTrue();
+        } finally {
+            committed.executeWithoutResult(status ->
+                    em.createQuery("delete from Member m where m.username like 'large%'").executeUpdate());
+            RepositoryCaches.invalidateAll(context);
+        }
+    }
+
+    private void assertSame(MemberSearchCondition condition) {
+        List<MemberTeamDto> jpa = memberRepository.search(condition).stream()
+                .sorted(Comparator.comparing(MemberTeamDto::getMemberId))
+                .collect(Collectors.toList());
+        assertThat(memberSnapshotQueries.search(condition)).isEqualTo(jpa);
+    }
+
+    private MemberSearchCondition condition(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
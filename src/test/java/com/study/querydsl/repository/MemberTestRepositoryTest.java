@@ -0,0 +1,116 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.EntityReadMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+    }
+
+    @Test
+    public void applyPagination(){
+        // 팀 조건이 없으면 count 쿼리에서 team join이 빠진다. 팀 없는 회원도 세어야 한다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("username"));
+        Page<Member> result = memberTestRepository.applyPagination(condition, pageRequest);
+        assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(result.getTotalElements()).isEqualTo(5);
+
+        // 팀명 조건이 있으면 join이 남는다.
+        condition.setTeamName("teamB");
+        Page<Member> teamB = memberTestRepository.applyPagination(condition, PageRequest.of(0, 1));
+        assertThat(teamB.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    public void applyPaginationSortByTeamName(){
+        // 스프링 Querydsl.applyPagination으로는 join한 별칭(teamName)으로 정렬할 수 없다.
+        // 팀 없는 회원(member5)은 null이라 nullsLast로 뒤에 둔다.
+        Sort sort = Sort.by(Sort.Order.desc("teamName").nullsLast());
+        Page<Member> result = memberTestRepository.applyPagination(new MemberSearchCondition(), PageRequest.of(0, 5, sort));
+        assertThat(result.getContent()).extracting("username")
+                .containsExactly("member3", "member4", "member1", "member2", "member5");
+    }
+
+    @Test
+    public void searchPageByApplyPage(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(30);
+        Page<Member> result = memberTestRepository.searchPageByApplyPage(condition, PageRequest.of(0, 2));
+        assertThat(result.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    public void managedEntitiesByDefault(){
+        em.flush();
+        em.clear();
+
+        // 기본(managed)이면 조회한 엔티티는 보통의 영속 엔티티라 바꾸면 update가 나간다.
+        List<Member> result = memberTestRepository.basicSelectFrom();
+        Session session = em.unwrap(Session.class);
+        assertThat(result).hasSize(5);
+        assertThat(result).noneMatch(session::isReadOnly);
+
+        result.get(0).setUsername("changed");
+        em.flush();
+        em.clear();
+        assertThat(em.find(Member.class, result.get(0).getId()).getUsername()).isEqualTo("changed");
+    }
+
+    @Test
+    public void readOnlyEntities(){
+        em.flush();
+        em.clear();
+
+        memberTestRepository.setEntityReadMode(EntityReadMode.READ_ONLY);
+        try {
+            // read-only면 조회한 엔티티는 스냅샷 없이 읽기 전용으로 올라온다.
+            List<Member> result = memberTestRepository.basicSelectFrom();
+            Session session = em.unwrap(Session.class);
+            assertThat(result).hasSize(5);
+            assertThat(result).allMatch(session::isReadOnly);
+
+            // 읽기 전용 엔티티는 바꿔도 update가 나가지 않는다.
+            result.get(0).setUsername("changed");
+            em.flush();
+            em.clear();
+            assertThat(em.find(Member.class, result.get(0).getId()).getUsername()).isNotEqualTo("changed");
+        } finally {
+            memberTestRepository.setEntityReadMode(EntityReadMode.MANAGED);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.study.querydsl.repository;
+
+import org.springframework.context.ApplicationContext;
+
+// 테스트가 벌크 JPQL로 테이블을 비우면 엔티티 이벤트가 없어 캐시가 지워진 row를 계속 들고 있으므로,
+// 다음 테스트 클래스가 같은 컨텍스트를 재사용하기 전에 비운다.
+final class RepositoryCaches {
+
+    private RepositoryCaches() {
+    }
+
+    static void invalidateAll(ApplicationContext context) {
+        context.getBean(TeamDirectory.class).invalidate();
+        context.getBean(TeamStatistics.class).invalidate();
+        context.getBean(MemberCountCache.class).invalidateAll();
+        context.getBean(MemberSnapshotQueries.class).invalidate();
+        context.getBean(UsernameIndex.class).invalidate();
+    }
+}
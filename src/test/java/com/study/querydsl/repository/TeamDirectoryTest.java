@@ -0,0 +1,65 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.CacheTtl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 시점을 봐야 하므로 테스트 트랜잭션(@Transactional)으로 감싸지 않고 직접 지운다.
+@SpringBootTest
+class TeamDirectoryTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TeamDirectory teamDirectory;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void after() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                em.createQuery("delete from Team").executeUpdate());
+        teamDirectory.invalidate();
+    }
+
+    @Test
+    public void reloadAfterCommit() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.persist(new Team("teamA"));
+            em.flush();
+            // flush(이벤트)와 커밋 사이에 다른 스레드가 커밋 전 팀 목록을 읽어 둔다.
+            List<Long> beforeCommit = CompletableFuture.supplyAsync(() -> teamDirectory.findIds("teamA")).join();
+            assertThat(beforeCommit).isEmpty();
+        });
+
+        // 트랜잭션이 끝날 때 한 번 더 비우므로 새 팀이 보인다.
+        assertThat(teamDirectory.findIds("teamA")).hasSize(1);
+        assertThat(teamDirectory.matchesNoTeam("teamA")).isFalse();
+        assertThat(teamDirectory.matchesNoTeam("noSuchTeam")).isTrue();
+    }
+
+    @Test
+    public void reloadAfterTtl() throws InterruptedException {
+        // 빈으로 등록하지 않았으므로 이벤트를 받지 않는다. (replica가 늦어서 옛 목록을 읽은 경우와 같다)
+        TeamDirectory directory = new TeamDirectory(em, new CacheTtl(Duration.ofMillis(50)));
+        assertThat(directory.matchesNoTeam("teamB")).isTrue();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> em.persist(new Team("teamB")));
+        assertThat(directory.matchesNoTeam("teamB")).isTrue();
+
+        // ttl이 지나면 다시 읽는다.
+        Thread.sleep(100);
+        assertThat(directory.findIds("teamB")).hasSize(1);
+    }
+}
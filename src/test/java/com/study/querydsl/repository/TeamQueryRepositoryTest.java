@@ -0,0 +1,71 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.diagnostics.StatementCounter;
+import com.study.querydsl.diagnostics.StatementScope;
+import com.study.querydsl.dto.TeamMembersDto;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamQueryRepositoryTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+    @Autowired
+    StatementCounter statementCounter;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void findTeamsWithMembersTest() {
+        try (StatementScope scope = statementCounter.open("teams with members")) {
+            List<TeamMembersDto> result = teamQueryRepository.findTeamsWithMembers(null);
+
+            assertThat(scope.getCount()).isEqualTo(2);
+            assertThat(result).extracting("name").containsExactly("teamA", "teamB", "teamC");
+            assertThat(result.get(0).getMembers()).extracting("username").containsExactly("member1", "member2");
+            assertThat(result.get(1).getMembers()).extracting("username").containsExactly("member3", "member4");
+            assertThat(result.get(2).getMembers()).isEmpty();
+        }
+    }
+
+    @Test
+    public void batchFetchTest() {
+        // 팀 프록시 하나를 초기화하면 나머지 팀도 in (...) 으로 같이 초기화된다.
+        try (StatementScope scope = statementCounter.open("batch fetch")) {
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+            members.forEach(m -> m.getTeam().getName());
+            members.forEach(m -> m.getTeam().getMembers().size());
+
+            // 회원 1번 + 팀 1번 + 팀의 회원 컬렉션 1번
+            assertThat(scope.getCount()).isEqualTo(3);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.study.querydsl.dto.TeamStatsDto;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static com.study.querydsl.entitly.QMember.member;
+import static com.study.querydsl.entitly.QTeam.team;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋된 변경만 반영하므로 테스트 트랜잭션(@Transactional)으로 감싸지 않고 직접 지운다.
+@SpringBootTest(properties = "member.team-stats.max-pending-changes=5")
+class TeamStatisticsTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TeamStatistics teamStatistics;
+    @Autowired
+    MemberBulkOperations bulkOperations;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    ApplicationContext context;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        teamStatistics.invalidate();
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            em.persist(new Member("member4", 40, teamB));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+        RepositoryCaches.invalidateAll(context);
+    }
+
+    @Test
+    public void statsTest() {
+        List<TeamStatsDto> stats = teamStatistics.getStats();
+
+        assertThat(stats).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(stats.get(0)).isEqualTo(new TeamStatsDto(stats.get(0).getTeamId(), "teamA", 2, 30, 15.0, 10, 20));
+        assertThat(stats.get(1)).isEqualTo(new TeamStatsDto(stats.get(1).getTeamId(), "teamB", 2, 70, 35.0, 30, 40));
+    }
+
+    @Test
+    public void incrementalTest() {
+        teamStatistics.getStats();
+
+        // 나이 변경, 팀 이동, 추가, 삭제를 한 트랜잭션에서
+        tx.executeWithoutResult(status -> {
+            Team teamB = findTeam("teamB");
+            findMember("member1").changeTeam(teamB);
+            findMember("member2").setAge(25);
+            em.persist(new Member("member5", 50, teamB));
+            em.remove(findMember("member3"));
+        });
+        assertMatchesGroupBy();
+
+        // 롤백된 변경은 반영하지 않는다.
+        tx.executeWithoutResult(status -> {
+            findMember("member4").setAge(99);
+            status.setRollbackOnly();
+        });
+        assertMatchesGroupBy();
+
+        // 벌크 변경은 바뀐 id만 다시 읽는다.
+        bulkOperations.update(member.age.goe(30), clause -> clause.set(member.age, member.age.add(1)));
+        assertMatchesGroupBy();
+    }
+
+    @Test
+    public void tooManyChangesInOneTransaction() {
+        teamStatistics.getStats();
+
+        // 모아 둘 수 있는 변경(5)보다 많으면 커밋된 뒤에 버리고 다시 읽는다.
+        tx.executeWithoutResult(status -> {
+            Team teamA = findTeam("teamA");
+            for (int i = 1; i <= 10; i++) {
+                em.persist(new Member("seed" + i, i, teamA));
+            }
+        });
+        assertMatchesGroupBy();
+    }
+
+    private void assertMatchesGroupBy() {
+        List<Tuple> expected = new JPAQueryFactory(em)
+                .select(team.name, member.count(), member.age.sum(), member.age.min(), member.age.max())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+
+        List<TeamStatsDto> stats = teamStatistics.getStats();
+        assertThat(stats).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Tuple row = expected.get(i);
+            TeamStatsDto actual = stats.get(i);
+            assertThat(actual.getTeamName()).isEqualTo(row.get(team.name));
+            assertThat(actual.getCount()).isEqualTo(row.get(member.count()));
+            assertThat(actual.getSum()).isEqualTo(row.get(member.age.sum()).longValue());
+            // 정수 컬럼의 avg는 DB에 따라 소수점을 버리므로 sum / count와 비교한다.
+            assertThat(actual.getAvg()).isEqualTo((double) actual.getSum() / actual.getCount());
+            assertThat(actual.getMin()).isEqualTo(row.get(member.age.min()));
+            assertThat(actual.getMax()).isEqualTo(row.get(member.age.max()));
+        }
+    }
+
+    private Team findTeam(String name) {
+        return new JPAQueryFactory(em).selectFrom(team).where(team.name.eq(name)).fetchOne();
+    }
+
+    private Member findMember(String username) {
+        return new JPAQueryFactory(em).selectFrom(member).where(member.username.eq(username)).fetchOne();
+    }
+}
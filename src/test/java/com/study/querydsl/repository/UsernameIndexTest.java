@@ -0,0 +1,128 @@
+package com.study.querydsl.repository;
+
+import com.study.querydsl.dto.MemberSearchCondition;
+import com.study.querydsl.dto.MemberTeamDto;
+import com.study.querydsl.entitly.EntityChangedEvent;
+import com.study.querydsl.entitly.Member;
+import com.study.querydsl.entitly.Team;
+import com.study.querydsl.repository.support.CacheTtl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "member.username-index.enabled=true")
+@Transactional
+class UsernameIndexTest {
+    @Autowired
+    EntityManager em;
+    @Autowired
+    UsernameIndex usernameIndex;
+    @Autowired
+    MemberQdslRepository memberQdslRepository;
+
+    Member kim;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        kim = new Member("Kim", 10, teamA);
+        em.persist(kim);
+        em.persist(new Member("kimchi", 20, teamA));
+        em.persist(new Member("seunghee", 30, teamB));
+        em.persist(new Member("heekim", 40, teamB));
+        em.flush();
+    }
+
+    @Test
+    public void prefixAndContains() {
+        assertThat(names(usernameIndex.findIdsByPrefix("KIM"))).containsExactly("Kim", "kimchi");
+        assertThat(names(usernameIndex.findIdsContaining("kim"))).containsExactly("heekim", "Kim", "kimchi");
+        // 3글자보다 짧으면 전체를 훑는다.
+        assertThat(names(usernameIndex.findIdsContaining("ee"))).containsExactly("heekim", "seunghee");
+    }
+
+    @Test
+    public void followsEntityChanges() {
+        kim.setUsername("park");
+        em.flush();
+
+        assertThat(names(usernameIndex.findIdsByPrefix("kim"))).containsExactly("kimchi");
+        assertThat(names(usernameIndex.findIdsByPrefix("par"))).containsExactly("park");
+    }
+
+    @Test
+    public void tooManyCandidates() {
+        UsernameIndex small = new UsernameIndex(em, true, 2, 1000, CacheTtl.none());
+
+        // 후보가 상한보다 많으면 자르지 않고 null (DB의 like로 찾는다)
+        assertThat(small.findIdsContaining("kim")).isNull();
+        assertThat(names(small.findIdsByPrefix("kim"))).containsExactly("Kim", "kimchi");
+    }
+
+    @Test
+    public void applyChangesAfterCommit() {
+        // 다른 스레드(다른 트랜잭션)가 커밋된 내용으로 인덱스를 먼저 만들어 둔다.
+        CompletableFuture.runAsync(() -> usernameIndex.findIdsByPrefix("kim")).join();
+
+        kim.setUsername("park");
+        em.flush();
+
+        // 이 트랜잭션에서는 바뀐 이름으로 찾고, 커밋 전이므로 다른 트랜잭션에서는 보이지 않는다.
+        assertThat(names(usernameIndex.findIdsByPrefix("par"))).containsExactly("park");
+        assertThat(CompletableFuture.supplyAsync(() -> usernameIndex.findIdsByPrefix("par")).join()).isEmpty();
+    }
+
+    @Test
+    public void tooManyPendingChanges() {
+        // 빈이 아니므로 이벤트는 직접 넘긴다. 인덱스는 트랜잭션 밖(다른 스레드)에서 만들어 둔다.
+        UsernameIndex small = new UsernameIndex(em, true, 1000, 2, CacheTtl.none());
+        CompletableFuture.runAsync(() -> small.findIdsByPrefix("kim")).join();
+
+        for (int i = 1; i <= 3; i++) {
+            Member member = new Member("kimbap" + i, i);
+            em.persist(member);
+            small.onEntityChanged(new EntityChangedEvent(Member.class, EntityChangedEvent.ChangeType.PERSIST, member));
+        }
+
+        // 모아 둘 수 있는 변경(2)보다 많으면 버리고, 이 트랜잭션에서는 인덱스 대신 like로 찾게 한다.
+        assertThat(small.findIdsByPrefix("kim")).isNull();
+    }
+
+    @Test
+    public void typeaheadWithCondition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        List<MemberTeamDto> result = memberQdslRepository.searchTypeahead("kim", true, condition, 10);
+
+        assertThat(result).extracting("username").containsExactly("heekim");
+    }
+
+    @Test
+    public void typeaheadSize() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        assertThatThrownBy(() -> memberQdslRepository.searchTypeahead("kim", false, condition, 0))
+                .isInstanceOf(InvalidSearchRequestException.class);
+        assertThatThrownBy(() -> memberQdslRepository.searchTypeahead("kim", false, condition, MemberQdslRepository.MAX_TYPEAHEAD_SIZE + 1))
+                .isInstanceOf(InvalidSearchRequestException.class);
+    }
+
+    private List<String> names(List<Long> ids) {
+        return ids.stream().map(id -> em.find(Member.class, id).getUsername()).collect(Collectors.toList());
+    }
+}